@@ -0,0 +1,73 @@
+package os;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Instruction throughput: the CPUs run the whole 30-job batch through fetch, decode and evaluate
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpuBench {
+
+    @Param({"FIFO", "ROUND_ROBIN"})
+    public Scheduler.scheduler policy;
+
+    @Param({"false", "true"})
+    public boolean paging;
+
+    @Param({"1", "4"})
+    public int cores;
+
+    @Param({"PLATFORM", "CARRIER"})
+    public Simulation.threads threads;
+
+    @Param({"false", "true"})
+    public boolean translate;
+
+    private String program;
+    private Simulation sim;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        program = Workloads.program_file();
+    }
+
+    @Setup(Level.Invocation)
+    public void load() {
+        sim = Workloads.simulation(program, cores, policy);
+        sim.paging = paging;
+        sim.translate = translate;
+        sim.reset();
+        for (int i = 0; i < cores; i++) {
+            sim.scheduler.add_CPU(new CPU(sim, i));
+        }
+    }
+
+    @Benchmark
+    public long run_batch() throws InterruptedException {
+        if (threads == Simulation.threads.CARRIER) {
+            sim.clock.carry(sim.scheduler.instructions);
+        } else {
+            List<Thread> started = new ArrayList<>();
+            for (CPU cpu : sim.scheduler.instructions) {
+                Thread thread = new Thread(cpu);
+                thread.start();
+                started.add(thread);
+            }
+            for (Thread thread : started) {
+                thread.join();
+            }
+        }
+        long time = 0;
+        for (CPU cpu : sim.scheduler.instructions) {
+            time = Math.max(time, cpu.getCompletionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,47 @@
+package os;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Context switch cost: restoring a job onto a CPU, and a full preempt and redispatch
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBench {
+
+    private Simulation sim;
+    private CPU cpu;
+    private PCB job;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sim = Workloads.simulation(Workloads.program_file(), 1, Scheduler.scheduler.ROUND_ROBIN);
+        sim.reset();
+        cpu = new CPU(sim, 0);
+        sim.scheduler.add_CPU(cpu);
+        sim.clock.take_turn(cpu);
+        job = sim.scheduler.next(cpu);
+    }
+
+    @Benchmark
+    public PCB load_job() {
+        sim.dispatcher.load_job(job, cpu);
+        cpu.getCache().flush();
+        return job;
+    }
+
+    @Benchmark
+    public PCB preempt_redispatch() {
+        sim.dispatcher.load_job(job, cpu);
+        sim.clock.running(cpu);
+        sim.clock.take_turn(cpu);
+        sim.dispatcher.preempt(job, cpu);
+        sim.clock.take_turn(cpu);
+        job = sim.scheduler.next(cpu);
+        return job;
+    }
+}
@@ -0,0 +1,84 @@
+package os;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Decoding every instruction word of the 30-job file, and interpreting every job: fetch, decode and
+// evaluate each instruction the job runs, as CPU.run_job does without translation, but without the
+// clock and scheduler around it
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstructionBench {
+
+    private int[] words;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Simulation sim = Workloads.simulation(Workloads.program_file(), 1, Scheduler.scheduler.FIFO);
+        sim.reset();
+        int size = 0;
+        for (PCB job : sim.scheduler.jobs) {
+            size = Math.max(size, job.getDiskStart() + job.getNumberofInstructions());
+        }
+        words = java.util.Arrays.copyOf(sim.mmu.disk, size);
+    }
+
+    // Every job in RAM with its input, put back before each run since the jobs write over it
+    @State(Scope.Thread)
+    public static class Batch {
+        Simulation sim;
+        CPU cpu;
+        private int[] ram;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            sim = Workloads.simulation(Workloads.program_file(), 1, Scheduler.scheduler.FIFO);
+            // Room for every job at once, and RD and WR done in place rather than blocking the job
+            sim.ram_size = 1 << 16;
+            sim.io.asynchronous = false;
+            sim.reset();
+            cpu = new CPU(sim, 0);
+            ram = sim.mmu.ram.clone();
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() {
+            System.arraycopy(ram, 0, sim.mmu.ram, 0, ram.length);
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        for (int word : words) {
+            bh.consume(Instruction.decode(word));
+        }
+    }
+
+    @Benchmark
+    public int decode_evaluate(Batch batch) {
+        CPU cpu = batch.cpu;
+        int retired = 0;
+        for (PCB job : batch.sim.scheduler.jobs) {
+            batch.sim.dispatcher.load_job(job, cpu);
+            int pc = 0;
+            while (pc < job.getNumberofInstructions()) {
+                long insn = cpu.getCache().fetch(pc);
+                if (Instruction.opcode(insn) == Instruction.HLT) {
+                    break;
+                }
+                cpu.jump(pc + 1);
+                cpu.decode(insn);
+                pc = cpu.getProgramCounter();
+                retired++;
+            }
+            cpu.getCache().flush();
+        }
+        return retired;
+    }
+}
@@ -0,0 +1,46 @@
+package os;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Loading the 30-job file and generated files 10 and 100 times its size,
+// parsing the text every time or going through the program image cache
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoaderBench {
+
+    @Param({"1", "10", "100"})
+    public int copies;
+
+    @Param({"false", "true"})
+    public boolean use_image;
+
+    private String program;
+    private Simulation sim;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        program = Workloads.program_file(copies);
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        sim = Workloads.simulation(program, 1, Scheduler.scheduler.FIFO);
+        sim.loader.use_image = use_image;
+        sim.scheduler.init(1);
+        sim.long_term.init();
+        sim.mmu.init();
+    }
+
+    @Benchmark
+    public int loadFile() {
+        sim.loader.loadFile();
+        return sim.scheduler.jobs.size();
+    }
+}
@@ -0,0 +1,64 @@
+package os;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// RAM allocation and word access
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MmuBench {
+
+    // Words per allocation / access sweep
+    @Param({"16", "64", "256"})
+    public int size;
+
+    // Leave RAM as alternating used and free 8 word blocks so allocation has many holes to search
+    @Param({"false", "true"})
+    public boolean fragmented;
+
+    private MMU mmu;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Simulation sim = new Simulation(1, Scheduler.scheduler.FIFO);
+        mmu = sim.mmu;
+        mmu.init();
+        if (fragmented) {
+            int block = 8;
+            int used = (sim.ram_size - 2 * size) / block;
+            for (int i = 0; i < used; i++) {
+                mmu.allocate(block);
+            }
+            for (int i = 0; i < used; i += 2) {
+                mmu.clear_all(i * block, (i + 1) * block);
+            }
+        }
+    }
+
+    @Benchmark
+    public int allocate_release() {
+        int start = mmu.allocate(size);
+        mmu.clear_all(start, start + size);
+        return start;
+    }
+
+    @Benchmark
+    public int store_load() {
+        int sum = 0;
+        for (int i = 0; i < size; i++) {
+            mmu.store_ram(i, i);
+            sum += mmu.load_ram(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void copy_to_ram() {
+        mmu.copy_to_ram(0, 0, size);
+    }
+}
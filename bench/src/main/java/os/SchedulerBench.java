@@ -0,0 +1,63 @@
+package os;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Short-term scheduling cost: a CPU takes the next job through Scheduler.next and puts it back the
+// way a preempted job goes back, under every policy, with one shared ready queue or a queue per CPU
+// with work stealing. Scheduler.next hands out jobs in simulated time order (see Clock), one CPU at
+// a time, so it is measured on one thread. next covers stealing from a peer when the CPU's own
+// queue is empty and the MLFQ boost every boost_interval dispatches, requeue the MLFQ demotion.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBench {
+
+    static final int CORES = 16;
+    static final int JOBS = 64;
+
+    @Param({"FIFO", "PRIORITY", "ROUND_ROBIN", "SJF", "SRTF", "MLFQ"})
+    public Scheduler.scheduler policy;
+
+    @Param({"false", "true"})
+    public boolean work_stealing;
+
+    private Simulation sim;
+    private CPU cpu;
+    private long time;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sim = Workloads.simulation(Workloads.program_file(), CORES, policy);
+        sim.scheduler.work_stealing = work_stealing;
+        sim.scheduler.init(CORES);
+        sim.clock.init(CORES);
+        for (int i = 0; i < JOBS; i++) {
+            sim.scheduler.addJob(new PCB(i + 1, 16 + i % 32, i % 8, 0), 0);
+        }
+        cpu = new CPU(sim, 0);
+    }
+
+    // Dispatch and preempt: with a queue per CPU, requeue spreads jobs round robin so CPU 0's own
+    // queue keeps running dry and it steals
+    @Benchmark
+    public PCB next_requeue() {
+        PCB job = sim.scheduler.next(cpu);
+        sim.scheduler.requeue(job, ++time);
+        return job;
+    }
+
+    // What a running CPU checks between instructions: under SRTF, whether a job that just arrived
+    // has less work left than the one running. Other policies return straight away. Measured on top
+    // of next_requeue, whose requeue is the arrival it looks at.
+    @Benchmark
+    public boolean shorter_job_waiting() {
+        PCB job = sim.scheduler.next(cpu);
+        sim.scheduler.requeue(job, ++time);
+        return sim.scheduler.shorter_job_waiting(cpu, job.getRemainingInstructions());
+    }
+}
@@ -0,0 +1,52 @@
+package os;
+
+import java.io.File;
+import java.io.IOException;
+
+// Program files and setup shared by the benchmarks
+final class Workloads {
+
+    static final String PROGRAM = "src/Program-File-Wordversion-30-JOBS.txt";
+
+    private Workloads() {
+    }
+
+    // The 30-job program file, found from the repo root or from bench/.
+    // -Dprogram=<file> overrides it.
+    static String program_file() {
+        String path = System.getProperty("program");
+        if (path != null) {
+            return path;
+        }
+        File file = new File(PROGRAM);
+        if (!file.exists()) {
+            file = new File("../" + PROGRAM);
+        }
+        return file.getPath();
+    }
+
+    // The 30-job file for copies == 1, otherwise a generated file of copies * 30 jobs
+    // like it, written once to the temp directory
+    static String program_file(int copies) throws IOException {
+        if (copies <= 1) {
+            return program_file();
+        }
+        int jobs = copies * 30;
+        File file = new File(System.getProperty("java.io.tmpdir"), "os-bench-" + jobs + "-JOBS.txt");
+        if (!file.exists()) {
+            WorkloadGenerator generator = new WorkloadGenerator();
+            generator.jobs = jobs;
+            generator.generate(file, null);
+        }
+        return file.getPath();
+    }
+
+    // A simulation of a program file on the given number of cores, set it up and call reset to load it.
+    // Its JMX beans are left out of the measurements, and run never logs events.
+    static Simulation simulation(String program, int cores, Scheduler.scheduler policy) {
+        Simulation sim = new Simulation(cores, policy);
+        sim.loader.program_file = program;
+        sim.jmx = false;
+        return sim;
+    }
+}
@@ -0,0 +1,102 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// Hits, misses, write policies and the time a CPU stalls going to memory
+class CacheTest {
+
+    // A 64-word job at RAM address 100 whose word i holds 1000 + i
+    private final PCB job = new PCB(1, 64, 1, 0);
+
+    private Simulation simulation(int size, int ways, Cache.write_policy write_mode) {
+        Simulation sim = new Simulation(1, Scheduler.scheduler.FIFO);
+        sim.cache_size = size;
+        sim.cache_line_size = 4;
+        sim.cache_ways = ways;
+        sim.cache_write_policy = write_mode;
+        sim.mmu.init();
+        job.setRamStart(100);
+        job.setRamEnd(164);
+        for (int i = 0; i < 64; i++) {
+            sim.mmu.store_ram(100 + i, 1000 + i);
+        }
+        return sim;
+    }
+
+    private CPU cpu(Simulation sim) {
+        CPU cpu = new CPU(sim, 0);
+        cpu.getCache().load(job);
+        return cpu;
+    }
+
+    @Test
+    void a_miss_fills_the_line_and_stalls() {
+        Simulation sim = simulation(128, 4, Cache.write_policy.WRITE_BACK);
+        CPU cpu = cpu(sim);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(1000 + i, cpu.getCache().read(i));
+        }
+        // One miss per 4-word line
+        assertEquals(4, job.getCacheMisses());
+        assertEquals(12, job.getCacheHits());
+        assertEquals(4L * sim.clock.cache_miss_cost, cpu.getStallTime());
+        assertEquals(cpu.getStallTime(), cpu.getClock());
+    }
+
+    @Test
+    void write_back_stores_on_flush() {
+        Simulation sim = simulation(128, 4, Cache.write_policy.WRITE_BACK);
+        CPU cpu = cpu(sim);
+        cpu.getCache().write(5, 42);
+        assertEquals(1005, sim.mmu.load_ram(105), "not written yet");
+        cpu.getCache().flush();
+        assertEquals(42, sim.mmu.load_ram(105));
+        assertTrue(job.getDirtyWords().get(5));
+        assertEquals(sim.clock.cache_miss_cost + sim.clock.write_back_cost, cpu.getStallTime());
+    }
+
+    @Test
+    void write_through_stores_every_write() {
+        Simulation sim = simulation(128, 4, Cache.write_policy.WRITE_THROUGH);
+        CPU cpu = cpu(sim);
+        cpu.getCache().write(5, 42);
+        cpu.getCache().write(6, 43);
+        assertEquals(42, sim.mmu.load_ram(105));
+        assertEquals(43, sim.mmu.load_ram(106));
+        // Nothing left to write back
+        cpu.getCache().flush();
+        assertEquals(sim.clock.cache_miss_cost + 2L * sim.clock.write_back_cost, cpu.getStallTime());
+    }
+
+    @Test
+    void an_evicted_dirty_line_is_written_back() {
+        // One set of one way: every line evicts the one before
+        Simulation sim = simulation(4, 1, Cache.write_policy.WRITE_BACK);
+        CPU cpu = cpu(sim);
+        cpu.getCache().write(1, 7);
+        cpu.getCache().read(4);
+        assertEquals(7, sim.mmu.load_ram(101));
+        assertEquals(1, job.getCacheEvictions());
+        assertEquals(2L * sim.clock.cache_miss_cost + sim.clock.write_back_cost, cpu.getStallTime());
+    }
+
+    // A smaller cache misses more and stalls longer on the same accesses
+    @Test
+    void cache_size_shows_in_stall_time() {
+        long[] stalls = new long[2];
+        int[] sizes = {8, 64};
+        for (int s = 0; s < sizes.length; s++) {
+            CPU cpu = cpu(simulation(sizes[s], 2, Cache.write_policy.WRITE_BACK));
+            for (int pass = 0; pass < 4; pass++) {
+                for (int i = 0; i < 32; i++) {
+                    cpu.getCache().read(i);
+                }
+            }
+            stalls[s] = cpu.getStallTime();
+        }
+        assertTrue(stalls[0] > stalls[1], "8 words stall " + stalls[0] + ", 64 words " + stalls[1]);
+    }
+}
@@ -0,0 +1,58 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+// The PC column: a job resumes where it was preempted or blocked, and finishes at the PC it ran to
+// rather than the one it last saved
+class EventLogTest {
+
+    @Test
+    void preempted_and_blocked_jobs() throws Exception {
+        assert_pcs(new Simulation(2, Scheduler.scheduler.ROUND_ROBIN));
+    }
+
+    // Jobs that run start to finish in one go never save a PC
+    @Test
+    void jobs_that_never_leave_the_cpu() throws Exception {
+        Simulation sim = new Simulation(1, Scheduler.scheduler.FIFO);
+        sim.io.asynchronous = false;
+        assert_pcs(sim);
+    }
+
+    private static void assert_pcs(Simulation sim) throws Exception {
+        sim.loader.program_file = Workloads.program_file();
+        sim.loader.use_image = false;
+        sim.cpu_threads = Simulation.threads.CARRIER;
+        sim.jmx = false;
+        StringWriter log = new StringWriter();
+        sim.events.init(log);
+        sim.metrics.init(Writer.nullWriter());
+        sim.run();
+
+        Map<String, String> left = new HashMap<>();
+        int finished = 0;
+        String[] lines = log.toString().split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            // Time,Event,CPU ID,Job ID,Priority,Job State,PC,...
+            String[] columns = lines[i].split(",");
+            String job = columns[3];
+            String pc = columns[6];
+            switch (columns[1]) {
+                case "DISPATCH" -> assertEquals(left.getOrDefault(job, "0"), pc, lines[i]);
+                case "PREEMPT", "BLOCK" -> left.put(job, pc);
+                case "FINISH" -> {
+                    assertTrue(Integer.parseInt(pc) > 0, lines[i]);
+                    finished++;
+                }
+            }
+        }
+        assertEquals(sim.scheduler.jobs.size(), finished);
+    }
+}
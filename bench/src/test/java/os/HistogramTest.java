@@ -0,0 +1,56 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+    @Test
+    void small_values_are_exact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(50.5, histogram.mean());
+        assertEquals(1, histogram.min());
+        assertEquals(100, histogram.max());
+        assertEquals(50, histogram.percentile(50));
+        assertEquals(90, histogram.percentile(90));
+        assertEquals(99, histogram.percentile(99));
+        assertEquals(100, histogram.percentile(100));
+    }
+
+    // Above 128 a percentile is within 1.6% of the value recorded at that rank
+    @Test
+    void large_values_are_within_bounds() {
+        Histogram histogram = new Histogram();
+        for (long i = 1; i <= 1_000_000; i++) {
+            histogram.record(i * 37);
+        }
+        for (double percent : new double[] {1, 10, 50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(percent / 100 * 1_000_000) * 37;
+            long read = histogram.percentile(percent);
+            assertTrue(Math.abs(read - exact) <= exact * 0.016, "p" + percent + " " + read + " for " + exact);
+        }
+        assertEquals(37, histogram.min());
+        assertEquals(37_000_000, histogram.max());
+    }
+
+    @Test
+    void empty_negative_and_cleared() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.min());
+        histogram.record(-5);
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(99));
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+        histogram.clear();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+}
@@ -0,0 +1,99 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A program file streamed in while the CPUs run, against the same file loaded before the run
+class LoaderTest {
+
+    @TempDir
+    Path dir;
+
+    private File text;
+
+    @BeforeEach
+    void copy_program() throws IOException {
+        text = dir.resolve("Program-File-30-JOBS.txt").toFile();
+        Files.copy(new File(Workloads.program_file()).toPath(), text.toPath());
+    }
+
+    // The image written while streaming holds the program, not the results of the run it was written in.
+    // Enough jobs that the first ones finish while the loader is still parsing.
+    @Test
+    void image_written_while_streaming_matches_the_text() throws Exception {
+        Files.copy(new File(Workloads.program_file(100)).toPath(), text.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        run(streaming(Scheduler.scheduler.FIFO, 4, Simulation.threads.PLATFORM, true));
+        assertTrue(ProgramImage.is_current(text, ProgramImage.image_for(text)), "image written");
+        ProgramImageTest.assert_same_program(ProgramImageTest.loaded(text, false), ProgramImageTest.loaded(text, true));
+    }
+
+    // Jobs arrive in simulated time, so every run of a streamed file gives the same timings
+    @Test
+    void streamed_timings_do_not_depend_on_the_threads() throws Exception {
+        List<String> expected = timings(run(streaming(Scheduler.scheduler.MLFQ, 4, Simulation.threads.CARRIER, false)));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, timings(run(streaming(Scheduler.scheduler.MLFQ, 4, Simulation.threads.PLATFORM, false))));
+        }
+    }
+
+    // A streamed job is timed from its arrival, and its results are the same as in a batch run
+    @Test
+    void streamed_run_matches_a_batch_run() throws Exception {
+        Simulation batch = new Simulation(2, Scheduler.scheduler.FIFO);
+        batch.loader.program_file = text.getPath();
+        batch.loader.use_image = false;
+        batch.jmx = false;
+        run(batch);
+        Simulation streamed = run(streaming(Scheduler.scheduler.FIFO, 2, Simulation.threads.PLATFORM, false));
+
+        assertEquals(batch.scheduler.jobs.size(), streamed.scheduler.jobs.size(), "jobs");
+        long arrival = 0;
+        for (PCB job : streamed.scheduler.jobs) {
+            assertTrue(job.getArrivalTime() > arrival, "job " + job.getJobId() + " arrives after the one before");
+            assertTrue(job.getStartTime() >= job.getArrivalTime(), "job " + job.getJobId() + " starts after it arrives");
+            arrival = job.getArrivalTime();
+        }
+        assertArrayEquals(batch.mmu.disk, streamed.mmu.disk, "disk after the run");
+    }
+
+    private Simulation streaming(Scheduler.scheduler policy, int cores, Simulation.threads threads, boolean use_image) {
+        Simulation sim = new Simulation(cores, policy);
+        sim.loader.program_file = text.getPath();
+        sim.loader.streaming = true;
+        sim.loader.use_image = use_image;
+        sim.cpu_threads = threads;
+        sim.jmx = false;
+        return sim;
+    }
+
+    private static Simulation run(Simulation sim) throws Exception {
+        sim.metrics.init(Writer.nullWriter());
+        sim.run();
+        return sim;
+    }
+
+    // Every job's dispatch and completion, and when each CPU finished
+    private static List<String> timings(Simulation sim) {
+        List<String> timings = new ArrayList<>();
+        for (PCB job : sim.scheduler.jobs) {
+            timings.add(job.getJobId() + ": " + job.getStartTime() + "-" + job.getCompletionTime());
+        }
+        for (CPU cpu : sim.scheduler.instructions) {
+            timings.add("CPU " + cpu.getCpuId() + ": " + cpu.getCompletionTime());
+        }
+        return timings;
+    }
+}
@@ -0,0 +1,56 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// The streaming loader submits jobs to the pool while CPUs admit from it
+class LongTermSchedulerTest {
+
+    private static final int JOBS = 200_000;
+
+    // Every job submitted during admits is admitted exactly once, under policies that reorder the pool
+    @Test
+    void submit_while_admitting_loses_no_jobs() throws InterruptedException {
+        for (Scheduler.scheduler policy : List.of(Scheduler.scheduler.SJF, Scheduler.scheduler.PRIORITY)) {
+            Simulation sim = new Simulation(1, policy);
+            // Paged jobs always fit, and a streaming reset leaves the program to the loader
+            sim.paging = true;
+            sim.loader.streaming = true;
+            sim.reset();
+
+            List<PCB> jobs = new ArrayList<>();
+            for (int i = 0; i < JOBS; i++) {
+                jobs.add(new PCB(i + 1, 1 + (i * 7919) % 1000, i % 16, 0));
+            }
+            Thread loader = new Thread(() -> {
+                for (PCB job : jobs) {
+                    sim.long_term.submit(job);
+                }
+            });
+            loader.start();
+            long deadline = System.nanoTime() + 60_000_000_000L;
+            while (ready(sim) < JOBS && System.nanoTime() < deadline) {
+                sim.long_term.admit(0);
+            }
+            loader.join();
+            sim.long_term.admit(0);
+
+            assertEquals(JOBS, ready(sim), policy + ": jobs in the ready queue");
+            for (PCB job : jobs) {
+                assertTrue(job.getJobState() == PCB.JobState.READY, policy + ": job " + job.getJobId() + " never admitted");
+            }
+        }
+    }
+
+    private static int ready(Simulation sim) {
+        int ready = 0;
+        for (int depth : sim.scheduler.queue_depths()) {
+            ready += depth;
+        }
+        return ready;
+    }
+}
@@ -0,0 +1,52 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Writer;
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+    // Synchronous I/O stalls a job on its CPU. That is not waiting, so the first job FIFO runs on
+    // one CPU never waits at all.
+    @Test
+    void stalls_are_not_waiting() throws Exception {
+        Simulation sim = new Simulation(1, Scheduler.scheduler.FIFO);
+        sim.loader.program_file = Workloads.program_file();
+        sim.loader.use_image = false;
+        sim.io.asynchronous = false;
+        sim.jmx = false;
+        sim.metrics.init(Writer.nullWriter());
+        sim.run();
+
+        assertEquals(0, sim.metrics.waiting_times.min());
+        long waiting = 0;
+        for (PCB job : sim.scheduler.jobs) {
+            long turnaround = job.getStartTime() + job.getCompletionTime() - job.getArrivalTime();
+            waiting += turnaround - (long) job.getProgramCounter() * sim.clock.instruction_cost - job.getStallTime();
+        }
+        assertEquals((double) waiting / sim.scheduler.jobs.size(), sim.metrics.waiting_times.mean(), 1e-9);
+    }
+
+    // A CPU counts every dispatch, a job preempted and dispatched again counts twice
+    @Test
+    void cpus_count_dispatches() throws Exception {
+        Simulation sim = new Simulation(2, Scheduler.scheduler.ROUND_ROBIN);
+        sim.loader.program_file = Workloads.program_file();
+        sim.loader.use_image = false;
+        sim.jmx = false;
+        sim.metrics.init(Writer.nullWriter());
+        sim.run();
+
+        int dispatches = 0;
+        for (CPU cpu : sim.scheduler.instructions) {
+            dispatches += cpu.getDispatches();
+        }
+        int expected = 0;
+        for (PCB job : sim.scheduler.jobs) {
+            // The first dispatch, then one after every preempt or block
+            expected += 1 + job.getContextSwitches();
+        }
+        assertEquals(expected, dispatches);
+    }
+}
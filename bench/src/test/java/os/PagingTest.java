@@ -0,0 +1,119 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Writer;
+import org.junit.jupiter.api.Test;
+
+// Replacement policies, page faults and write-back of dirty pages
+class PagingTest {
+
+    @Test
+    void fifo_evicts_the_oldest_page() {
+        ReplacementPolicy fifo = loaded(ReplacementPolicy.policy.FIFO);
+        fifo.accessed(0);
+        assertEquals(0, fifo.victim());
+        assertEquals(1, fifo.victim());
+    }
+
+    @Test
+    void lru_evicts_the_least_recently_used() {
+        ReplacementPolicy lru = loaded(ReplacementPolicy.policy.LRU);
+        lru.accessed(0);
+        assertEquals(1, lru.victim());
+        assertEquals(2, lru.victim());
+        assertEquals(0, lru.victim());
+    }
+
+    @Test
+    void clock_gives_a_second_chance() {
+        ReplacementPolicy clock = loaded(ReplacementPolicy.policy.CLOCK);
+        // Every frame was referenced on load, a whole sweep clears them
+        assertEquals(0, clock.victim());
+        clock.accessed(1);
+        assertEquals(2, clock.victim());
+    }
+
+    @Test
+    void freed_frames_are_never_victims() {
+        for (ReplacementPolicy.policy kind : ReplacementPolicy.policy.values()) {
+            ReplacementPolicy policy = loaded(kind);
+            policy.freed(0);
+            policy.freed(2);
+            assertEquals(1, policy.victim(), kind.toString());
+        }
+    }
+
+    // Frames 0, 1 and 2 loaded in that order
+    private static ReplacementPolicy loaded(ReplacementPolicy.policy kind) {
+        ReplacementPolicy policy = ReplacementPolicy.create(kind, 3);
+        for (int frame = 0; frame < 3; frame++) {
+            policy.loaded(frame);
+        }
+        return policy;
+    }
+
+    // Two frames of 4 words for a 12-word job: a third page evicts one, and only a dirty page goes
+    // back to disk
+    @Test
+    void evicted_pages_are_written_back_if_dirty() {
+        Simulation sim = new Simulation(1, Scheduler.scheduler.FIFO);
+        sim.paging = true;
+        sim.page_size = 4;
+        sim.ram_size = 8;
+        sim.mmu.init();
+        PCB job = new PCB(1, 12, 1, 0);
+        job.setPageTable(new PageTable(job.getTotalSize(), sim.page_size));
+        for (int i = 0; i < 12; i++) {
+            sim.mmu.store_disk(i, 100 + i);
+        }
+
+        assertEquals(100, sim.mmu.read(job, 0));
+        sim.mmu.write(job, 5, 55);
+        assertEquals(0, sim.mmu.free_frames());
+        assertEquals(105, sim.mmu.load_disk(5), "not written yet");
+
+        // Evicts page 0, which is clean
+        assertEquals(108, sim.mmu.read(job, 8));
+        assertEquals(-1, job.getPageTable().frame(0));
+        // Evicts page 1, which is dirty
+        assertEquals(100, sim.mmu.read(job, 0));
+        assertEquals(-1, job.getPageTable().frame(1));
+        assertEquals(55, sim.mmu.load_disk(5));
+        assertEquals(104, sim.mmu.load_disk(4));
+        assertEquals(55, sim.mmu.read(job, 5));
+        assertEquals(5, job.getPageFaults());
+
+        sim.mmu.release(job);
+        assertEquals(2, sim.mmu.free_frames());
+        for (int page = 0; page < job.getPageTable().pages(); page++) {
+            assertEquals(-1, job.getPageTable().frame(page));
+        }
+    }
+
+    // Paging in and out with any policy leaves the same results on disk as loading jobs whole
+    @Test
+    void every_policy_leaves_the_same_disk() throws Exception {
+        int[] contiguous = run(false, ReplacementPolicy.policy.FIFO).mmu.disk;
+        for (ReplacementPolicy.policy kind : ReplacementPolicy.policy.values()) {
+            Simulation paged = run(true, kind);
+            assertArrayEquals(contiguous, paged.mmu.disk, kind.toString());
+        }
+    }
+
+    private static Simulation run(boolean paging, ReplacementPolicy.policy kind) throws Exception {
+        Simulation sim = new Simulation(4, Scheduler.scheduler.ROUND_ROBIN);
+        sim.loader.program_file = Workloads.program_file();
+        sim.loader.use_image = false;
+        sim.paging = paging;
+        sim.replacement = kind;
+        // Room for a few jobs' pages at once, so they evict each other
+        sim.ram_size = 128;
+        sim.cpu_threads = Simulation.threads.CARRIER;
+        sim.jmx = false;
+        sim.metrics.init(Writer.nullWriter());
+        sim.run();
+        return sim;
+    }
+}
@@ -0,0 +1,98 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The compiled image of a program file loads the same jobs and disk words as the text
+class ProgramImageTest {
+
+    @TempDir
+    Path dir;
+
+    private File text;
+    private File image;
+
+    // A copy of the 30-job file, so images are written next to it and not under src
+    @BeforeEach
+    void copy_program() throws IOException {
+        text = dir.resolve("Program-File-30-JOBS.txt").toFile();
+        Files.copy(new File(Workloads.program_file()).toPath(), text.toPath());
+        image = ProgramImage.image_for(text);
+    }
+
+    @Test
+    void image_loads_what_the_text_parses() {
+        Simulation parsed = loaded(text, false);
+        // The first load writes the image, the second reads it
+        loaded(text, true);
+        assertTrue(ProgramImage.is_current(text, image), "image written");
+        assert_same_program(parsed, loaded(text, true));
+    }
+
+    @Test
+    void truncated_image_is_rejected() throws IOException {
+        loaded(text, true);
+        truncate(8);
+        assertThrows(IOException.class, () -> ProgramImage.load(image, new Simulation(1, Scheduler.scheduler.FIFO).mmu));
+        truncate(image.length() - 3);
+        assertThrows(IOException.class, () -> ProgramImage.load(image, new Simulation(1, Scheduler.scheduler.FIFO).mmu));
+    }
+
+    @Test
+    void truncated_image_falls_back_to_the_text() throws IOException {
+        Simulation parsed = loaded(text, false);
+        loaded(text, true);
+        truncate(image.length() / 2);
+        assert_same_program(parsed, loaded(text, true));
+    }
+
+    // A simulation with the program loaded, through the image or straight from the text
+    static Simulation loaded(File text, boolean use_image) {
+        Simulation sim = new Simulation(1, Scheduler.scheduler.FIFO);
+        sim.loader.program_file = text.getPath();
+        sim.loader.use_image = use_image;
+        sim.jmx = false;
+        sim.reset();
+        return sim;
+    }
+
+    // Cut the image short, keeping it newer than the text so the loader still picks it
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(image, "rw")) {
+            file.setLength(length);
+        }
+        assertTrue(image.setLastModified(text.lastModified() + 1000));
+    }
+
+    static void assert_same_program(Simulation expected, Simulation actual) {
+        List<PCB> jobs = expected.scheduler.jobs;
+        assertEquals(jobs.size(), actual.scheduler.jobs.size(), "jobs");
+        int words = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            PCB want = jobs.get(i);
+            PCB got = actual.scheduler.jobs.get(i);
+            assertEquals(want.getJobId(), got.getJobId(), "job id");
+            assertEquals(want.getNumberofInstructions(), got.getNumberofInstructions(), "job " + want.getJobId());
+            assertEquals(want.getPriority(), got.getPriority(), "job " + want.getJobId());
+            assertEquals(want.getInputBufferSize(), got.getInputBufferSize(), "job " + want.getJobId());
+            assertEquals(want.getOutputBufferSize(), got.getOutputBufferSize(), "job " + want.getJobId());
+            assertEquals(want.getTempBufferSize(), got.getTempBufferSize(), "job " + want.getJobId());
+            assertEquals(want.getDiskStart(), got.getDiskStart(), "job " + want.getJobId());
+            words = Math.max(words, want.getDiskStart() + want.getTotalSize());
+        }
+        assertArrayEquals(Arrays.copyOf(expected.mmu.disk, words), Arrays.copyOf(actual.mmu.disk, words), "disk words");
+    }
+}
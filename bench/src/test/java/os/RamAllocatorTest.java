@@ -0,0 +1,68 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class RamAllocatorTest {
+
+    // Holes of 30 words at 10, 20 at 45 and 30 at 70
+    private static RamAllocator fragmented() {
+        RamAllocator allocator = new RamAllocator(100);
+        assertEquals(0, allocator.allocate(10));
+        assertEquals(10, allocator.allocate(30));
+        assertEquals(40, allocator.allocate(5));
+        assertEquals(45, allocator.allocate(20));
+        assertEquals(65, allocator.allocate(5));
+        allocator.free(10, 30);
+        allocator.free(45, 20);
+        assertEquals(3, allocator.holes());
+        return allocator;
+    }
+
+    @Test
+    void best_fit_takes_the_smallest_hole_that_fits() {
+        RamAllocator allocator = fragmented();
+        assertEquals(45, allocator.allocate(15));
+        // Two holes of 30, the lower one goes first
+        assertEquals(10, allocator.allocate(25));
+        assertEquals(70, allocator.allocate(30));
+        assertEquals(2, allocator.holes());
+        assertEquals(5, allocator.largest_hole());
+        assertEquals(90, allocator.used());
+    }
+
+    @Test
+    void free_merges_with_both_neighbours() {
+        RamAllocator allocator = new RamAllocator(100);
+        allocator.allocate(10);
+        allocator.allocate(10);
+        allocator.allocate(10);
+        allocator.free(0, 10);
+        // Merges with the free space after it
+        allocator.free(20, 10);
+        assertEquals(2, allocator.holes());
+        assertEquals(80, allocator.largest_hole());
+        // Merges with the holes on both sides
+        allocator.free(10, 10);
+        assertEquals(1, allocator.holes());
+        assertEquals(100, allocator.largest_hole());
+        assertEquals(0, allocator.used());
+        assertEquals(0, allocator.allocate(100));
+    }
+
+    @Test
+    void nothing_fits() {
+        RamAllocator allocator = fragmented();
+        assertEquals(-1, allocator.allocate(31));
+        assertEquals(-1, allocator.allocate(0));
+        assertEquals(30, allocator.largest_hole());
+        allocator.reset();
+        assertEquals(1, allocator.holes());
+        assertEquals(-1, allocator.allocate(101));
+        assertEquals(0, allocator.allocate(100));
+        assertEquals(0, allocator.holes());
+        assertEquals(0, allocator.largest_hole());
+        assertEquals(-1, allocator.allocate(1));
+    }
+}
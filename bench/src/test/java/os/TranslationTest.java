@@ -0,0 +1,71 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Translated code leaves the same disk, job counters and timings as interpreting every instruction
+class TranslationTest {
+
+    @Test
+    void fifo_on_one_cpu() throws Exception {
+        assert_same_run(Scheduler.scheduler.FIFO, 1, false);
+    }
+
+    @Test
+    void round_robin_on_two_cpus() throws Exception {
+        assert_same_run(Scheduler.scheduler.ROUND_ROBIN, 2, false);
+    }
+
+    // SRTF checks for a shorter job between instructions
+    @Test
+    void srtf_on_one_cpu() throws Exception {
+        assert_same_run(Scheduler.scheduler.SRTF, 1, false);
+    }
+
+    @Test
+    void mlfq_paging_on_four_cpus() throws Exception {
+        assert_same_run(Scheduler.scheduler.MLFQ, 4, true);
+    }
+
+    private static void assert_same_run(Scheduler.scheduler policy, int cores, boolean paging) throws Exception {
+        Simulation translated = run(policy, cores, paging, true);
+        Simulation interpreted = run(policy, cores, paging, false);
+        assertArrayEquals(interpreted.mmu.disk, translated.mmu.disk, "disk after the run");
+        assertEquals(counters(interpreted), counters(translated));
+    }
+
+    private static Simulation run(Scheduler.scheduler policy, int cores, boolean paging, boolean translate) throws Exception {
+        Simulation sim = new Simulation(cores, policy);
+        sim.loader.program_file = Workloads.program_file();
+        sim.loader.use_image = false;
+        sim.paging = paging;
+        sim.translate = translate;
+        sim.cpu_threads = Simulation.threads.CARRIER;
+        sim.jmx = false;
+        sim.metrics.init(Writer.nullWriter());
+        sim.run();
+        return sim;
+    }
+
+    // Every job's and every CPU's metrics
+    private static List<String> counters(Simulation sim) {
+        List<String> counters = new ArrayList<>();
+        for (PCB job : sim.scheduler.jobs) {
+            counters.add("job " + job.getJobId() + ": instructions " + job.getProgramCounter()
+                    + ", start " + job.getStartTime() + ", completion " + job.getCompletionTime()
+                    + ", cache " + job.getCacheHits() + "/" + job.getCacheMisses() + "/" + job.getCacheEvictions()
+                    + ", page faults " + job.getPageFaults() + ", context switches " + job.getContextSwitches()
+                    + ", I/O " + job.getNumIoProcesses() + ", I/O wait " + job.getIoWait());
+        }
+        for (CPU cpu : sim.scheduler.instructions) {
+            counters.add("CPU " + cpu.getCpuId() + ": busy " + cpu.getBusyTime() + ", stall " + cpu.getStallTime()
+                    + ", completion " + cpu.getCompletionTime());
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,52 @@
+package os;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkloadGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    // Settings belong to one generator, and the same settings always give the same file
+    @Test
+    void same_settings_give_the_same_file() throws Exception {
+        WorkloadGenerator small = new WorkloadGenerator();
+        small.jobs = 50;
+        WorkloadGenerator other = new WorkloadGenerator();
+        other.jobs = 7;
+        File first = dir.resolve("first.txt").toFile();
+        File second = dir.resolve("second.txt").toFile();
+        small.generate(first, null);
+        other.generate(dir.resolve("other.txt").toFile(), null);
+        small.generate(second, null);
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+
+        Simulation sim = new Simulation(1, Scheduler.scheduler.FIFO);
+        sim.loader.program_file = first.getPath();
+        sim.loader.use_image = false;
+        sim.jmx = false;
+        sim.reset();
+        assertEquals(50, sim.scheduler.jobs.size());
+    }
+
+    @Test
+    void inverted_ranges_are_rejected() {
+        File file = dir.resolve("jobs.txt").toFile();
+        WorkloadGenerator instructions = new WorkloadGenerator();
+        instructions.min_instructions = 40;
+        instructions.max_instructions = 20;
+        assertThrows(IllegalArgumentException.class, () -> instructions.generate(file, null));
+        WorkloadGenerator priority = new WorkloadGenerator();
+        priority.min_priority = 9;
+        priority.max_priority = 2;
+        assertThrows(IllegalArgumentException.class, () -> priority.generate(file, null));
+    }
+}
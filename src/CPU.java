@@ -1,23 +1,14 @@
-import java.math.BigInteger;
-import java.util.Arrays;
-
-
-
 // This class handles the execution of instructions read from the memory.
-public class CPU extends Thread {
+public class CPU implements Runnable {
 
     // CPU Identification Info
+    private final Simulation sim;
+    private final int cpu_id;
     private PCB current_job;
     private cpu_state cpu_state;
 
-    // Determine opcode by indexing opcd
-    private final String[] opcd = {"RD", "WR", "ST", "LW", "MOV", "ADD", "SUB", "MUL", "DIV", "AND",
-            "OR", "MOVI", "ADDI", "MULI", "DIVI", "LDI", "SLT", "SLTI", "HLT", "NOP", "JMP", "BEQ",
-            "BNE", "BEZ", "BNZ", "BGZ", "BLZ"};
-
-    // bin instructions
-    private String bin;
-    private String address;
+    // Decoded instruction fields
+    private int address;
     private int reg1_index;
     private int reg2_index;
     private int reg3_index;
@@ -25,99 +16,317 @@ public class CPU extends Thread {
 
     // Memory
     private Register[] register = new Register[16];
-    private final String[] cache = new String[Driver.cache_size];
+    private final Cache cache;
 
     // Program continuation variables
     private int pc;
     private boolean continueExec = true;
-    private boolean interrupt = false;
+    private int arrivalsSeen;
+
+    // Where the CPU is in taking, running and switching out jobs, so it can stop whenever it has to
+    // wait for another CPU and carry on from the same place, see step
+    private stage current_stage;
+    private int slice;
+    private int executed;
+    // An instruction has been charged but not run yet, and the CPU has to wait for its turn before going on
+    private boolean charged;
+    private boolean waiting;
+
+    // Opcode and branch counts, null unless the simulation is profiled
+    private final Profile profile;
+
+    // RD or WR the current job is blocking on, see IOChannel
+    private IOChannel.Request io_request;
+
+    // Simulated time, see Clock
+    private long clock;
 
     // Metrics
-    private final long start;
     private long completion;
+    private long busy;
+    private long stalled;
+    private int interrupts;
     private int ioProcesses = 0;
-    private int jobCount;
+    private int dispatches;
+    // Instructions run, for Monitor
+    private long retired;
 
-    public CPU (int id) {
-        this.start = System.currentTimeMillis();
+    public CPU (Simulation sim, int id) {
+        this.sim = sim;
+        this.cpu_id = id;
         this.cpu_state = cpu_state.FREE;
+        this.current_stage = stage.TAKE;
+        this.cache = new Cache(sim, this, sim.cache_size, sim.cache_line_size, sim.cache_ways,
+                sim.cache_eviction, sim.cache_write_policy, id);
+        this.profile = sim.profile ? new Profile(0) : null;
     }
 
 
-    // This method loads an instruction at a specified address from RAM.
-    private String fetch(int index) {
-        return cache[index].substring(0, 8);
+    // This method loads a pre-decoded instruction at a specified address from the cache.
+    private long fetch(int index) {
+        return cache.fetch(index);
     }
 
-    // Decode a bin string of instructions.
-    // Chars 0-1 indicate instruction format.
-    // Chars 2-7 indicate instruction OPCD.
-    // Chars 8-32 indicate additional register, addresses, etc.
-    private void decode(String hex) {
-        StringBuilder binString = new StringBuilder();
-        binString.append(new BigInteger(hex, 16).toString(2));
-        // Adds leading zeros if bin string is less than 32 chars long
-        while (binString.toString().length() < 32) {
-            binString.insert(0, "0");
+    // Decode a packed instruction into the CPU's register and address fields,
+    // then evaluate it. See Instruction for the field layout.
+    void decode(long insn) {
+        reg1_index = Instruction.reg1(insn);
+        reg2_index = Instruction.reg2(insn);
+        reg3_index = Instruction.reg3(insn);
+        address = Instruction.address(insn);
+        addressIndex = Instruction.addressIndex(insn);
+        evaluate(Instruction.opcode(insn));
+    }
+
+    // Main thread execution of the CPU class.
+    // The thread parks whenever the CPU has to wait for another one, see Clock.carry for running
+    // every CPU on one thread instead.
+    @Override
+    public void run() {
+        while (step()) {
+            if (!sim.clock.park(this)) {
+                finish();
+                return;
+            }
         }
-        bin = binString.toString();
+    }
 
-        // Chars 0-1 indicate type of instruction (arithmetic, conditional, etc)
-        instructionFormat(bin.substring(0, 2));
+    // Take, run and switch out jobs until the CPU has to wait for another CPU's event, then return
+    // true. Called again once it is this CPU's turn, it carries on from there.
+    // Returns false once every job has completed and the CPU has stopped.
+    boolean step() {
+        while (true) {
+            switch (current_stage) {
+                case TAKE:
+                    // Taking a job changes shared state, wait for this CPU's turn
+                    if (!sim.clock.take_turn(this)) {
+                        return true;
+                    }
+                    current_stage = stage.NEXT;
+                    break;
+                case NEXT: {
+                    PCB nextJob = sim.scheduler.next(this);
+                    if (nextJob != null) {
+                        dispatch(nextJob);
+                    } else if (sim.scheduler.done()) {
+                        sim.clock.stop(this);
+                        finish();
+                        current_stage = stage.STOPPED;
+                        return false;
+                    } else {
+                        // Park until a job is ready
+                        sim.clock.idle(this);
+                        current_stage = stage.IDLE;
+                    }
+                    break;
+                }
+                case IDLE:
+                    if (!sim.clock.idle_over(this)) {
+                        return true;
+                    }
+                    current_stage = stage.NEXT;
+                    break;
+                case RUN:
+                    if (!run_job()) {
+                        return true;
+                    }
+                    current_stage = stage.SWITCH;
+                    break;
+                case SWITCH:
+                    // Preempting or finishing the job changes shared state, wait for this CPU's turn
+                    if (!sim.clock.take_turn(this)) {
+                        return true;
+                    }
+                    switch_out();
+                    current_stage = stage.TAKE;
+                    break;
+                default:
+                    return false;
+            }
+        }
+    }
 
-        // Chars 2-7 specify opcode of action. This is converted to decimal and used to index opcd
-        String opcodeBinary = bin.substring(2, 8);
-        evaluate(opcd[Integer.parseInt(opcodeBinary, 2)]);
+    private void dispatch(PCB nextJob) {
+        dispatches++;
+        cpu_state = cpu_state.EXECUTING;
+        sim.dispatcher.load_job(nextJob, this);
+        nextJob.setRamUsage(sim.mmu.ram_usage());
+        slice = sim.scheduler.time_slice(current_job);
+        executed = 0;
+        if (sim.translate && nextJob.getTranslation() == null && !nextJob.isCodeWritten()) {
+            nextJob.setTranslation(sim.translations.of(nextJob, sim.mmu.disk, sim.cache_line_size));
+        }
+        if (profile != null && nextJob.getProfile() == null) {
+            nextJob.setProfile(new Profile(nextJob.getNumberofInstructions()));
+        }
+        waiting = !sim.clock.running(this);
+        current_stage = stage.RUN;
     }
 
-    // Main thread execution of the CPU class. 
-    @Override
-    public void run() {
-        // Checking if job completed successfully
-        while (!Scheduler.has_next()) {
-            PCB nextJob = Scheduler.next();
-            if (nextJob != null) {
-                jobCount++;
-                cpu_state = cpu_state.EXECUTING;
-                Dispatcher.load_job(nextJob, this);
-                nextJob.setRamUsage(MMU.ram_usage());
-                loadInstructionsToCache();
-                nextJob.setCacheUsage(getCacheUsage());
-                while (continueExec && pc < current_job.getNumberofInstructions()) {
-                    // Artificial exec time for each instruction
-                    try {
-                        Thread.sleep(Driver.thread_delay);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
+    // Run the current job until it blocks, finishes or uses up its slice, then return true.
+    // Returns false if the CPU has to wait for an earlier event first.
+    private boolean run_job() {
+        if (waiting) {
+            if (!sim.clock.resume(this)) {
+                return false;
+            }
+            waiting = false;
+        }
+        while (true) {
+            if (charged) {
+                charged = false;
+                long before = clock;
+                int at = pc;
+                long insn = fetch(pc);
+                pc++;
+                current_job.incrementProgramCounter();
+                retired++;
+                decode(insn);
+                if (profile != null) {
+                    count(Instruction.opcode(insn), at, pc != at + 1);
+                }
+                // A synchronous transfer or a page fault stalled the CPU, let any earlier events go first
+                if (clock != before && !sim.clock.advanced(this)) {
+                    waiting = true;
+                    return false;
+                }
+            }
+            if (!continueExec || pc >= current_job.getNumberofInstructions() || io_request != null) {
+                return true;
+            }
+            if (executed == slice
+                    || sim.scheduler.shorter_job_waiting(this, current_job.getNumberofInstructions() - pc)) {
+                return true;
+            }
+            // Run a whole translated block if none of the checks above can stop it part way, even if
+            // every access in it stalls as long as it can
+            Translation code = current_job.getTranslation();
+            Translation.Block block = code == null ? null : code.block(pc);
+            if (block != null && executed + block.length() <= slice
+                    && sim.clock.ahead(clock + (long) block.length() * sim.clock.instruction_cost
+                            + (long) block.accesses * longest_access())) {
+                executed += block.length();
+                charge(block.length() * sim.clock.instruction_cost);
+                long charged_to = clock;
+                pc = block.end;
+                current_job.addProgramCounter(block.length());
+                retired += block.length();
+                block.run(this, register, cache);
+                if (profile != null) {
+                    // Only the last instruction of a block can branch
+                    for (int i = 0; i < block.length(); i++) {
+                        count(block.opcode(i), block.start + i, pc != block.end);
                     }
-                    String hex = fetch(pc);
-                    pc++;
-                    current_job.incrementProgramCounter();
-                    decode(hex);
                 }
-                MMU.clear_all(current_job.getRamStart(), current_job.getRamEnd());
-                Dispatcher.unload_job(current_job, this);
-                cpu_state = cpu_state.FREE;
-                clearCache();
+                // Page faults in the block stalled the CPU
+                if (clock != charged_to && !sim.clock.advanced(this)) {
+                    waiting = true;
+                    return false;
+                }
+                continue;
+            }
+            executed++;
+            charge(sim.clock.instruction_cost);
+            charged = true;
+            if (!sim.clock.advanced(this)) {
+                waiting = true;
+                return false;
             }
         }
+    }
+
+    private void switch_out() {
+        if (io_request != null) {
+            sim.dispatcher.block(current_job, this, io_request);
+            io_request = null;
+        } else if (continueExec && pc < current_job.getNumberofInstructions()) {
+            sim.dispatcher.preempt(current_job, this);
+        } else {
+            PCB finished = current_job;
+            sim.dispatcher.unload_job(finished, this);
+            sim.long_term.release(finished, clock);
+        }
+        cpu_state = cpu_state.FREE;
+    }
 
-        completion = System.currentTimeMillis();
+    private void finish() {
+        completion = clock;
+    }
+
+    // Count an instruction that ran in this CPU's and the job's profiles
+    private void count(int opcode, int at, boolean taken) {
+        profile.count(opcode, at, taken);
+        current_job.getProfile().count(opcode, at, taken);
+    }
+
+    // Charge simulated time spent working to this CPU
+    void charge(int ticks) {
+        clock += ticks;
+        busy += ticks;
+    }
+
+    // Stall the running job for a synchronous transfer or a trip to memory
+    private void stall(int ticks) {
+        clock += ticks;
+        stalled += ticks;
+        if (current_job != null) {
+            current_job.addStallTime(ticks);
+        }
+    }
+
+    // Longest a cache lookup can stall: a miss that evicts a dirty line and, in paging mode, faults
+    // on the page of each
+    private long longest_access() {
+        return sim.clock.cache_miss_cost + sim.clock.write_back_cost + (sim.paging ? 2L * sim.clock.page_fault_cost : 0);
+    }
+
+    // The running job touched a page that is not in RAM, see MMU
+    void page_fault() {
+        stall(sim.clock.page_fault_cost);
+    }
+
+    // The cache filled a line or wrote to memory for the running job, see Cache
+    void memory_access(int ticks) {
+        stall(ticks);
     }
 
     // Getter/setter methods
-    void resetProgramCounter() {
-        this.pc = 0;
+    int getCpuId() {
+        return cpu_id;
+    }
+    void setProgramCounter(int pc) {
+        this.pc = pc;
         this.continueExec = true;
     }
+    // Branch from a translated block
+    void jump(int pc) {
+        this.pc = pc;
+    }
+    void halt() {
+        continueExec = false;
+    }
+    int getProgramCounter() {
+        return pc;
+    }
     void setcurrent_job(PCB job) {
         this.current_job = job;
     }
     PCB getcurrent_job() {
         return current_job;
     }
-    void setHasInterrupt(boolean interrupt) {
-        this.interrupt = interrupt;
+    int getArrivalsSeen() {
+        return arrivalsSeen;
+    }
+    void setArrivalsSeen(int arrivals) {
+        this.arrivalsSeen = arrivals;
+    }
+    // Interrupt from the I/O channel: a request this CPU issued completed at the given time. The
+    // handler runs as part of the channel's completion event, so in simulated time order whatever
+    // this CPU is doing, and makes the blocked job ready again.
+    void interrupt(IOChannel.Request request, long time) {
+        interrupts++;
+        request.job.setJobState(PCB.JobState.READY);
+        sim.scheduler.unblock(request.job, time);
     }
     void setregisters(Register[] register) {
         this.register = register;
@@ -125,132 +334,124 @@ public class CPU extends Thread {
     Register[] getregisters() {
         return register;
     }
+    long getClock() {
+        return clock;
+    }
+    void setClock(long clock) {
+        this.clock = clock;
+    }
     public long getCompletionTime() {
-        return completion - start;
+        return completion;
+    }
+    long getBusyTime() {
+        return busy;
+    }
+    long getStallTime() {
+        return stalled;
+    }
+    int getInterrupts() {
+        return interrupts;
     }
     public int getIoProcesses() {
         return ioProcesses;
     }
-    public int getJobCount() {
-        return jobCount;
+    // Jobs dispatched, a job counts again every time it comes back after a preempt or block
+    public int getDispatches() {
+        return dispatches;
     }
 
-    // Clear cache array
-    void clearCache() {
-        Arrays.fill(cache, "");
+    long getInstructions() {
+        return retired;
     }
-
-    // Reads info for the current job from RAM into cache.
-    void loadInstructionsToCache() {
-        for (int i = 0; i < current_job.getTotalSize(); i++) {
-            cache[i] = MMU.load_ram(current_job.getRamStart() + i);
-        }
+    cpu_state getcpu_state() {
+        return cpu_state;
     }
-
-    /* Get the number of currently loaded instructions in the cache.*/
-    public int getCacheUsage() {
-        int usage = 0;
-        for (String s : cache) {
-            if (s != null && !s.equals("")) {
-                usage++;
-            }
-        }
-        return usage;
+    Cache getCache() {
+        return cache;
     }
 
-    // Initializes register indexes based on instruction format.
-
-    private void instructionFormat(String format) {
-        switch (format) {
-            case "00": { // ARITHMETIC
-                String reg1 = bin.substring(8, 12);
-                reg1_index = Integer.parseInt(reg1, 2);
-
-                String reg2 = bin.substring(12, 16);
-                reg2_index = Integer.parseInt(reg2, 2);
-
-                String reg3 = bin.substring(16, 20);
-                reg3_index = Integer.parseInt(reg3, 2);
-                break;
-            }
-            case "01": // CONDITIONAL
-            case "11": { // INPUT/OUTPUT
-                String reg1 = bin.substring(8, 12);
-                reg1_index = Integer.parseInt(reg1, 2);
+    Profile getProfile() {
+        return profile;
+    }
 
-                String reg2 = bin.substring(12, 16);
-                reg2_index = Integer.parseInt(reg2, 2);
+    // Loads a word of the current job through the cache.
+    private int read(int index) {
+        return cache.read(index);
+    }
 
-                address = bin.substring(16, 32);
-                addressIndex = Integer.parseInt(address, 2) / 4;
-                break;
-            }
-            case "10": { // UNCONDITIONAL
-                address = bin.substring(8, 32);
-                addressIndex = Integer.parseInt(address, 2) / 4;
-                break;
-            }
-        }
+    // Stores a word of the current job through the cache. The cache re-decodes the word,
+    // so self-modifying programs still see their own stores.
+    private void write(int index, int data) {
+        cache.write(index, data);
+        current_job.wroteWord(index);
     }
 
+
     // Method to provide operations for each OPCODE.
-    private void evaluate(String opcode) {
+    private void evaluate(int opcode) {
         switch (opcode) {
-            case "RD": {
-                if (addressIndex == 0) {
-                    register[reg1_index].data = Integer.parseInt(cache[register[reg2_index].data], 16);
+            case Instruction.RD: {
+                int source = addressIndex == 0 ? register[reg2_index].data : addressIndex;
+                if (sim.io.asynchronous) {
+                    io_request = IOChannel.read(current_job, reg1_index, source);
                 } else {
-                    register[reg1_index].data = Integer.parseInt(cache[addressIndex], 16);
+                    register[reg1_index].data = read(source);
+                    stall(sim.io.latency);
                 }
                 ioProcesses++;
                 current_job.incrementIoProcesses();
                 break;
             }
-            case "WR": {
-                cache[addressIndex] = Integer.toHexString(register[reg1_index].data);
+            case Instruction.WR: {
+                if (sim.io.asynchronous) {
+                    io_request = IOChannel.write(current_job, addressIndex, register[reg1_index].data);
+                } else {
+                    write(addressIndex, register[reg1_index].data);
+                    stall(sim.io.latency);
+                }
                 ioProcesses++;
                 current_job.incrementIoProcesses();
                 break;
             }
-            case "ST": {
+            case Instruction.ST: {
                 if (addressIndex == 0) {
-                    cache[register[reg2_index].data] = Integer.toHexString(register[reg1_index].data);
+                    write(register[reg2_index].data, register[reg1_index].data);
                 } else {
-                    cache[addressIndex] = Integer.toHexString(register[reg1_index].data);
+                    write(addressIndex, register[reg1_index].data);
                 }
                 break;
             }
-            case "LW": {
+            case Instruction.LW: {
                 if (addressIndex == 0) {
-                    register[reg2_index].data = Integer.parseInt(cache[register[reg1_index].data], 16);
+                    register[reg2_index].data = read(register[reg1_index].data);
                 } else {
-                    register[reg2_index].data = Integer.parseInt(cache[addressIndex], 16);
+                    register[reg2_index].data = read(addressIndex);
                 }
                 break;
             }
-            case "MOV": {
+            case Instruction.MOV: {
                 register[reg3_index].data = register[reg1_index].data;
                 break;
             }
-            case "ADD": {
+            case Instruction.ADD: {
                 register[reg3_index].data = register[reg1_index].data + register[reg2_index].data;
                 break;
             }
-            case "SUB": {
+            case Instruction.SUB: {
                 register[reg3_index].data = register[reg1_index].data - register[reg2_index].data;
                 break;
             }
-            case "MUL": {
+            case Instruction.MUL: {
                 register[reg3_index].data = register[reg1_index].data * register[reg2_index].data;
                 break;
             }
-            case "DIV": {
+            case Instruction.DIV: {
                 if (register[reg2_index].data != 0) {
                     register[reg3_index].data = register[reg1_index].data / register[reg2_index].data;
                 }
                 break;
             }
-            case "AND": {
+            case Instruction.AND: {
                 if (register[reg1_index].data != 0 && register[reg2_index].data != 0) {
                     register[reg3_index].data = 1;
                 } else {
@@ -258,7 +459,7 @@ public class CPU extends Thread {
                 }
                 break;
             }
-            case "OR": {
+            case Instruction.OR: {
                 if (register[reg1_index].data == 1 || register[reg2_index].data == 1) {
                     register[reg3_index].data = 1;
                 } else {
@@ -266,29 +467,29 @@ public class CPU extends Thread {
                 }
                 break;
             }
-            case "MOVI": {
-                register[reg2_index].data = Integer.parseInt(address, 2);
+            case Instruction.MOVI: {
+                register[reg2_index].data = address;
                 break;
             }
-            case "ADDI": {
+            case Instruction.ADDI: {
                 register[reg2_index].data++;
                 break;
             }
-            case "MULI": {
+            case Instruction.MULI: {
                 register[reg2_index].data = register[reg2_index].data * addressIndex;
                 break;
             }
-            case "DIVI": {
+            case Instruction.DIVI: {
                 if (addressIndex != 0) {
                     register[reg2_index].data = register[reg2_index].data / addressIndex;
                 }
                 break;
             }
-            case "LDI": {
+            case Instruction.LDI: {
                 register[reg2_index].data = addressIndex;
                 break;
             }
-            case "SLT": {
+            case Instruction.SLT: {
                 if (register[reg1_index].data < register[reg2_index].data) {
                     register[reg3_index].data = 1;
                 } else {
@@ -296,7 +497,7 @@ public class CPU extends Thread {
                 }
                 break;
             }
-            case "SLTI": {
+            case Instruction.SLTI: {
                 if (register[reg1_index].data < addressIndex) {
                     register[reg2_index].data = 1;
                 } else {
@@ -304,49 +505,49 @@ public class CPU extends Thread {
                 }
                 break;
             }
-            case "HLT": {
+            case Instruction.HLT: {
                 continueExec = false;
                 break;
             }
-            case "NOP": {
+            case Instruction.NOP: {
                 pc++;
                 break;
             }
-            case "JMP": {
+            case Instruction.JMP: {
                 pc = addressIndex;
                 break;
             }
-            case "BEQ": {
+            case Instruction.BEQ: {
                 if (register[reg1_index].data == register[reg2_index].data) {
                     pc = addressIndex;
                 }
                 break;
             }
-            case "BNE": {
+            case Instruction.BNE: {
                 if (register[reg1_index].data != register[reg2_index].data) {
                     pc = addressIndex;
                 }
                 break;
             }
-            case "BEZ": {
+            case Instruction.BEZ: {
                 if (register[reg2_index].data == 0) {
                     pc = addressIndex;
                 }
                 break;
             }
-            case "BNZ": {
+            case Instruction.BNZ: {
                 if (register[reg1_index].data != 0) {
                     pc = addressIndex;
                 }
                 break;
             }
-            case "BGZ": {
+            case Instruction.BGZ: {
                 if (register[reg1_index].data > 0) {
                     pc = addressIndex;
                 }
                 break;
             }
-            case "BLZ": {
+            case Instruction.BLZ: {
                 if (register[reg1_index].data < 0) {
                     pc = addressIndex;
                 }
@@ -362,6 +563,15 @@ public class CPU extends Thread {
         EXECUTING
     }
 
+    enum stage {
+        TAKE,
+        NEXT,
+        IDLE,
+        RUN,
+        SWITCH,
+        STOPPED
+    }
+
     @Override
     public String toString() {
         return " | State: " + cpu_state;
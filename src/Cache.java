@@ -0,0 +1,204 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Set-associative cache between a CPU and the MMU.
+// Addresses are word offsets in the running job's image. Each line holds the raw words
+// and their pre-decoded form (see Instruction), so instruction fetches stay allocation free.
+// Hits, misses and evictions are counted on the job that caused them. Going to memory stalls
+// the CPU: Clock.cache_miss_cost to fill a line, and Clock.write_back_cost to write a dirty line
+// back or, under write-through, every word stored.
+class Cache {
+
+    private final Simulation sim;
+    private final CPU cpu;
+    private final int line_size;
+    private final int ways;
+    private final int sets;
+    private final eviction replacement;
+    private final write_policy write_mode;
+
+    // Per way: the line number it holds or -1, dirty flag and last access stamp for LRU
+    private final int[] tags;
+    private final boolean[] dirty;
+    // Per word: written since the line was filled, so write-back only copies what changed
+    private final boolean[] dirty_words;
+    private final long[] last_used;
+    private long clock;
+    private final Random random;
+
+    // line_size words per way
+    private final int[] words;
+    private final long[] decoded;
+
+    private PCB job;
+
+    Cache(Simulation sim, CPU cpu, int size, int line_size, int ways, eviction replacement,
+            write_policy write_mode, long seed) {
+        this.sim = sim;
+        this.cpu = cpu;
+        this.line_size = line_size;
+        this.ways = ways;
+        this.sets = Math.max(1, size / (line_size * ways));
+        this.replacement = replacement;
+        this.write_mode = write_mode;
+        this.tags = new int[sets * ways];
+        this.dirty = new boolean[sets * ways];
+        this.last_used = new long[sets * ways];
+        this.random = new Random(seed);
+        this.words = new int[sets * ways * line_size];
+        this.decoded = new long[sets * ways * line_size];
+        this.dirty_words = new boolean[sets * ways * line_size];
+        Arrays.fill(tags, -1);
+    }
+
+    // Start caching for a job, the cache must be empty
+    void load(PCB job) {
+        this.job = job;
+    }
+
+    // Write every dirty line back to memory and empty the cache
+    void flush() {
+        for (int way = 0; way < tags.length; way++) {
+            if (tags[way] >= 0) {
+                write_back(way);
+                tags[way] = -1;
+            }
+        }
+        job = null;
+    }
+
+    // Read an instruction in its decoded form
+    long fetch(int address) {
+        return decoded[slot(address)];
+    }
+
+    int read(int address) {
+        return words[slot(address)];
+    }
+
+    // Count instruction fetches in a row from the line holding address, as that many calls to
+    // fetch with nothing in between would: the first may miss, the rest hit the same line
+    void fetch_run(int address, int count) {
+        int way = slot(address) / line_size;
+        job.addCacheHits(count - 1);
+        clock += count - 1;
+        last_used[way] = clock;
+    }
+
+    void write(int address, int data) {
+        int slot = slot(address);
+        words[slot] = data;
+        decoded[slot] = Instruction.decode(data);
+        if (write_mode == write_policy.WRITE_THROUGH) {
+            store_words(address, slot, 1);
+            cpu.memory_access(sim.clock.write_back_cost);
+        } else {
+            dirty[slot / line_size] = true;
+            dirty_words[slot] = true;
+        }
+    }
+
+    // Index of the word in words/decoded, filling its line on a miss
+    private int slot(int address) {
+        int line = address / line_size;
+        int base = (line % sets) * ways;
+        for (int way = base; way < base + ways; way++) {
+            if (tags[way] == line) {
+                job.incrementCacheHits();
+                last_used[way] = ++clock;
+                return way * line_size + address % line_size;
+            }
+        }
+        job.incrementCacheMisses();
+        int way = victim(base);
+        fill(way, line);
+        cpu.memory_access(sim.clock.cache_miss_cost);
+        return way * line_size + address % line_size;
+    }
+
+    // An empty way in the set if there is one, otherwise evict one
+    private int victim(int base) {
+        int victim = -1;
+        for (int way = base; way < base + ways; way++) {
+            if (tags[way] < 0) {
+                return way;
+            }
+            if (victim < 0 || last_used[way] < last_used[victim]) {
+                victim = way;
+            }
+        }
+        if (replacement == eviction.RANDOM) {
+            victim = base + random.nextInt(ways);
+        }
+        job.incrementCacheEvictions();
+        write_back(victim);
+        return victim;
+    }
+
+    private void fill(int way, int line) {
+        int address = line * line_size;
+        for (int i = 0; i < line_size; i++) {
+            int data = load_word(address + i);
+            words[way * line_size + i] = data;
+            decoded[way * line_size + i] = Instruction.decode(data);
+        }
+        tags[way] = line;
+        dirty[way] = false;
+        last_used[way] = ++clock;
+    }
+
+    // Copy the dirty words of a line back to memory, one store per run of adjacent dirty words
+    private void write_back(int way) {
+        if (!dirty[way]) {
+            return;
+        }
+        int address = tags[way] * line_size;
+        int base = way * line_size;
+        int i = 0;
+        while (i < line_size) {
+            if (!dirty_words[base + i]) {
+                i++;
+                continue;
+            }
+            int run = i;
+            while (i < line_size && dirty_words[base + i]) {
+                dirty_words[base + i] = false;
+                i++;
+            }
+            store_words(address + run, base + run, i - run);
+        }
+        dirty[way] = false;
+        cpu.memory_access(sim.clock.write_back_cost);
+    }
+
+    private int load_word(int address) {
+        return sim.mmu.load_word(job, address);
+    }
+
+    // Words past the end of the job's image are never written.
+    // Store length words starting at slot to memory and mark them dirty in the job's image
+    private void store_words(int address, int slot, int length) {
+        length = Math.min(length, job.getTotalSize() - address);
+        if (length <= 0) {
+            return;
+        }
+        if (sim.paging) {
+            for (int i = 0; i < length; i++) {
+                sim.mmu.write(job, address + i, words[slot + i]);
+            }
+        } else {
+            sim.mmu.copy_to_ram(words, slot, job.getRamStart() + address, length);
+        }
+        job.markDirty(address, address + length);
+    }
+
+    enum eviction {
+        LRU,
+        RANDOM
+    }
+
+    enum write_policy {
+        WRITE_BACK,
+        WRITE_THROUGH
+    }
+}
@@ -0,0 +1,548 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Simulated time.
+// Every CPU keeps its own logical clock that instructions, I/O and context switches advance by a
+// fixed cost, so a run takes no wall clock time and gives the same timings every time.
+// Anything that touches shared scheduler state (taking, preempting or finishing a job) is an event
+// at the CPU's current time. Events run one at a time in time order: a CPU waits for its turn until
+// no other CPU has an earlier event pending, ties going to the lower CPU id. A running CPU also
+// stops at the earliest pending event, so it never runs ahead of something that could affect it.
+// Timed events that belong to no CPU, such as I/O completions, wait in an event queue and run
+// before any CPU event at the same time, on whichever thread reaches them first.
+// When the program file streams in, each job's arrival is such an event, and nothing may happen
+// after the latest arrival the loader has handed over until it hands over the next one, so how
+// fast the loader thread parses never shows in the timings.
+// None of the calls a CPU makes here block. Each says whether the CPU may go on, and when it may
+// not the CPU returns from CPU.step and is stepped again once it is its turn: either its own thread
+// parks on its own condition, and only the CPU with the next event is woken, or carry runs every CPU
+// on one thread. Either way a change costs one wakeup however many CPUs there are.
+class Clock {
+
+    // Cost in ticks of one instruction, of saving or restoring a job, of filling a cache line and
+    // of writing one back (see Cache), of bringing a page in from disk in paging mode and of reading
+    // one word of a program file that streams in. The cost of I/O is IOChannel.latency.
+    int instruction_cost = 1;
+    int context_switch_cost = 2;
+    int cache_miss_cost = 4;
+    int write_back_cost = 2;
+    int page_fault_cost = 20;
+    int load_cost = 1;
+
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final int EVENTS = -2;
+    private static final int ID_BITS = 20;
+
+    private final Simulation sim;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Timed events in time then submission order
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long event_sequence;
+
+    // Per CPU: its time as of its last event, what it is doing and where it parks
+    private long[] time = new long[0];
+    private cpu_clock[] state = new cpu_clock[0];
+    private Condition[] wakeup = new Condition[0];
+
+    // CPUs by next event as (time << ID_BITS | id), so the CPU that goes next is found in O(log n).
+    // Idle CPUs whose time is not after last_ready can all go at last_ready and are kept by id alone.
+    private final TreeSet<Long> running = new TreeSet<>();
+    private final TreeSet<Long> waiting = new TreeSet<>();
+    private final TreeSet<Long> idle_ahead = new TreeSet<>();
+    private final TreeSet<Integer> idle_behind = new TreeSet<>();
+
+    // The CPU whose event is being handled, EVENTS while a timed event runs, or -1
+    private int holder = -1;
+
+    // Time the latest job was made ready, an idle CPU's next event is when it can pick that job up
+    private long last_ready;
+
+    // Earliest pending event of a CPU that is not running, running CPUs stop there
+    private volatile long horizon = NEVER;
+
+    // Every job arriving up to this time has been handed over by the streaming loader, NEVER once
+    // it is done or when the program was loaded before the run
+    private long arrivals_until = NEVER;
+
+    // SRTF looks at the ready queues while a job runs, and in paging mode every CPU shares the
+    // frames and the replacement policy, so running CPUs also keep in step with each other and only
+    // run an instruction once every other CPU has caught up
+    private boolean strict;
+
+    Clock(Simulation sim) {
+        this.sim = sim;
+    }
+
+    void init(int cores) {
+        lock.lock();
+        try {
+            time = new long[cores];
+            state = new cpu_clock[cores];
+            wakeup = new Condition[cores];
+            running.clear();
+            waiting.clear();
+            idle_ahead.clear();
+            idle_behind.clear();
+            // Every CPU starts out about to take its first job at time 0
+            Arrays.fill(state, cpu_clock.WAITING);
+            for (int i = 0; i < cores; i++) {
+                wakeup[i] = lock.newCondition();
+                waiting.add(key(0, i));
+            }
+            holder = -1;
+            last_ready = 0;
+            events.clear();
+            event_sequence = 0;
+            arrivals_until = sim.loader.streaming ? -1 : NEVER;
+            strict = (sim.scheduler.policy == Scheduler.scheduler.SRTF || sim.paging) && cores > 1;
+            update();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Run an action at the given simulated time
+    void schedule(long when, Runnable action) {
+        lock.lock();
+        try {
+            events.add(new Event(when, event_sequence++, action));
+            update();
+            signal_next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The streaming loader hands over a job that arrives at the given time, as an action to run
+    // then. Arrivals come in time order.
+    void arrival(long when, Runnable action) {
+        lock.lock();
+        try {
+            events.add(new Event(when, event_sequence++, action));
+            arrivals_until = when;
+            update();
+            signal_next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The streaming loader has handed over every job
+    void end_of_arrivals() {
+        lock.lock();
+        try {
+            arrivals_until = NEVER;
+            update();
+            signal_next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called by a running CPU after it advanced its own clock.
+    // False if another CPU has an event due first, the CPU waits and then calls resume.
+    boolean advanced(CPU cpu) {
+        return cpu.getClock() < horizon || sync(cpu);
+    }
+
+    private boolean sync(CPU cpu) {
+        int id = cpu.getCpuId();
+        lock.lock();
+        try {
+            move(id, cpu_clock.RUNNING, cpu.getClock());
+            if (strict) {
+                update();
+            }
+            signal_next();
+            return turn(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // True if a running CPU can run up to the given time without reaching another CPU's event
+    boolean ahead(long time) {
+        return time < horizon;
+    }
+
+    // True once a running CPU that had to wait may go on
+    boolean resume(CPU cpu) {
+        lock.lock();
+        try {
+            return turn(cpu.getCpuId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // True once it is this CPU's turn to handle an event at its current time.
+    // The turn is held until the CPU starts running a job or goes idle.
+    boolean take_turn(CPU cpu) {
+        int id = cpu.getCpuId();
+        lock.lock();
+        try {
+            if (holder == id) {
+                return true;
+            }
+            if (state[id] != cpu_clock.WAITING || time[id] != cpu.getClock()) {
+                move(id, cpu_clock.WAITING, cpu.getClock());
+                update();
+                signal_next();
+            }
+            if (!turn(id)) {
+                return false;
+            }
+            holder = id;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Give up the turn while there is nothing to run, then wait for idle_over
+    void idle(CPU cpu) {
+        int id = cpu.getCpuId();
+        lock.lock();
+        try {
+            move(id, cpu_clock.IDLE, cpu.getClock());
+            release(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // True once a job is ready and the idle CPU holds the turn again, with its clock moved up to when
+    // the job became ready, or once the run is over
+    boolean idle_over(CPU cpu) {
+        int id = cpu.getCpuId();
+        lock.lock();
+        try {
+            if (!turn(id)) {
+                return sim.scheduler.done();
+            }
+            cpu.setClock(Math.max(cpu.getClock(), last_ready));
+            move(id, cpu_clock.WAITING, cpu.getClock());
+            holder = id;
+            update();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The CPU has dispatched a job and runs it until its next event.
+    // False if events due while it held its turn must run before it looks at the ready queues.
+    boolean running(CPU cpu) {
+        int id = cpu.getCpuId();
+        lock.lock();
+        try {
+            move(id, cpu_clock.RUNNING, cpu.getClock());
+            release(id);
+            return !strict || turn(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The CPU has no more work and takes no further part
+    void stop(CPU cpu) {
+        int id = cpu.getCpuId();
+        lock.lock();
+        try {
+            move(id, cpu_clock.STOPPED, time[id]);
+            release(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A job entered a ready queue at the given time
+    void ready(long when) {
+        lock.lock();
+        try {
+            if (when > last_ready) {
+                last_ready = when;
+                // Idle CPUs that were waiting for a job before now can all take it at last_ready
+                while (!idle_ahead.isEmpty() && idle_ahead.first() >> ID_BITS <= last_ready) {
+                    idle_behind.add(id(idle_ahead.pollFirst()));
+                }
+            }
+            update();
+            signal_next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Park the calling CPU's thread until the CPU may go on. False if the thread was interrupted.
+    boolean park(CPU cpu) {
+        int id = cpu.getCpuId();
+        lock.lock();
+        try {
+            while (!turn(id) && !(state[id] == cpu_clock.IDLE && sim.scheduler.done())) {
+                wakeup[id].await();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Run every CPU on the calling thread instead of a thread each. The CPU with the earliest event
+    // steps until it has to wait for another one, then the next goes. Events run one at a time either
+    // way, so nothing is lost for giving up the threads, and no thread ever has to wake another.
+    void carry(List<CPU> cpus) {
+        Condition carrier;
+        lock.lock();
+        try {
+            carrier = lock.newCondition();
+            Arrays.fill(wakeup, carrier);
+        } finally {
+            lock.unlock();
+        }
+        int live = cpus.size();
+        while (live > 0) {
+            int id = next_to_go(carrier);
+            if (id < 0) {
+                return;
+            }
+            if (!cpus.get(id).step()) {
+                live--;
+            }
+        }
+    }
+
+    // The CPU that goes next: the one with the earliest event once any timed events due have run, or
+    // an idle one once the run is over so it can stop. Waits for the loader if there is none yet, or
+    // if the next event is after the latest arrival it has handed over.
+    private int next_to_go(Condition carrier) {
+        lock.lock();
+        try {
+            while (true) {
+                run_events();
+                long next = next_cpu(true);
+                if (next != NEVER && next >> ID_BITS <= arrivals_until) {
+                    return id(next);
+                }
+                if (sim.scheduler.done()) {
+                    if (!idle_behind.isEmpty()) {
+                        return idle_behind.first();
+                    }
+                    if (!idle_ahead.isEmpty()) {
+                        return id(idle_ahead.first());
+                    }
+                }
+                carrier.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Something other than a clock changed, such as the run finishing, wake every waiting CPU
+    void wake() {
+        lock.lock();
+        try {
+            for (Condition condition : wakeup) {
+                condition.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(int id) {
+        if (holder == id) {
+            holder = -1;
+        }
+        update();
+        signal_next();
+    }
+
+    // Run any timed events that are due, then check whether CPU id may go
+    private boolean turn(int id) {
+        run_events();
+        return holder < 0 && first(id);
+    }
+
+    private void run_events() {
+        if (holder >= 0 || events.isEmpty()) {
+            return;
+        }
+        boolean ran = false;
+        // An event may make a job ready and move idle CPUs' next events, so look again after each one
+        while (!events.isEmpty() && events.peek().time <= earliest_cpu_event()
+                && events.peek().time <= arrivals_until) {
+            Event event = events.poll();
+            holder = EVENTS;
+            try {
+                event.action.run();
+            } finally {
+                holder = -1;
+            }
+            ran = true;
+        }
+        if (ran) {
+            update();
+            signal_next();
+        }
+    }
+
+    private long earliest_cpu_event() {
+        long next = next_cpu(true);
+        return next == NEVER ? NEVER : next >> ID_BITS;
+    }
+
+    // True if CPU id has the earliest pending event
+    private boolean first(int id) {
+        long mine = next_event(id);
+        if (mine == NEVER || mine > arrivals_until || !events.isEmpty() && events.peek().time <= mine) {
+            return false;
+        }
+        return next_cpu(true) == key(mine, id);
+    }
+
+    // Key of the CPU with the earliest pending event, leaving out running CPUs unless asked, or NEVER
+    private long next_cpu(boolean with_running) {
+        long next = waiting.isEmpty() ? NEVER : waiting.first();
+        if (with_running && !running.isEmpty()) {
+            next = Math.min(next, running.first());
+        }
+        if (sim.scheduler.has_ready()) {
+            if (!idle_behind.isEmpty()) {
+                next = Math.min(next, key(last_ready, idle_behind.first()));
+            } else if (!idle_ahead.isEmpty()) {
+                next = Math.min(next, idle_ahead.first());
+            }
+        }
+        return next;
+    }
+
+    // Wake the CPU with the earliest pending event, it runs any timed events due before it.
+    // With no CPU event pending but timed events waiting, every CPU left is idle, wake one to run them.
+    // While a CPU holds its turn nobody else can go, it wakes the next CPU when it lets go.
+    private void signal_next() {
+        if (holder != -1) {
+            return;
+        }
+        long next = next_cpu(true);
+        if (next != NEVER) {
+            wakeup[id(next)].signal();
+        } else if (!events.isEmpty()) {
+            if (!idle_behind.isEmpty()) {
+                wakeup[idle_behind.first()].signal();
+            } else if (!idle_ahead.isEmpty()) {
+                wakeup[id(idle_ahead.first())].signal();
+            }
+        }
+    }
+
+    private long next_event(int id) {
+        switch (state[id]) {
+            case RUNNING:
+            case WAITING:
+                return time[id];
+            case IDLE:
+                return sim.scheduler.has_ready() ? Math.max(time[id], last_ready) : NEVER;
+            default:
+                return NEVER;
+        }
+    }
+
+    private void update() {
+        long earliest = events.isEmpty() ? NEVER : events.peek().time;
+        long next = next_cpu(strict);
+        if (next != NEVER) {
+            earliest = Math.min(earliest, next >> ID_BITS);
+        }
+        if (arrivals_until != NEVER) {
+            earliest = Math.min(earliest, arrivals_until + 1);
+        }
+        horizon = earliest;
+    }
+
+    // Set what CPU id is doing and its time, keeping the index in step
+    private void move(int id, cpu_clock to, long when) {
+        switch (state[id]) {
+            case RUNNING:
+                running.remove(key(time[id], id));
+                break;
+            case WAITING:
+                waiting.remove(key(time[id], id));
+                break;
+            case IDLE:
+                if (!idle_ahead.remove(key(time[id], id))) {
+                    idle_behind.remove(id);
+                }
+                break;
+            default:
+                break;
+        }
+        state[id] = to;
+        time[id] = when;
+        switch (to) {
+            case RUNNING:
+                running.add(key(when, id));
+                break;
+            case WAITING:
+                waiting.add(key(when, id));
+                break;
+            case IDLE:
+                if (when <= last_ready) {
+                    idle_behind.add(id);
+                } else {
+                    idle_ahead.add(key(when, id));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static long key(long when, int id) {
+        return when << ID_BITS | id;
+    }
+
+    private static int id(long key) {
+        return (int) (key & ((1 << ID_BITS) - 1));
+    }
+
+    private static class Event implements Comparable<Event> {
+        final long time;
+        final long sequence;
+        final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    enum cpu_clock {
+        RUNNING,
+        WAITING,
+        IDLE,
+        STOPPED
+    }
+}
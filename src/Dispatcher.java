@@ -1,34 +1,82 @@
+import java.util.BitSet;
+
 //Dispatcher
 class Dispatcher {
 
-    //load job into cpu
-    static synchronized void load_job(PCB job, CPU cpu) {
-        // Load Instructions and data into RAM
+    private final Simulation sim;
+
+    Dispatcher(Simulation sim) {
+        this.sim = sim;
+    }
+
+    //load job into cpu, the CPU gives up its turn once it starts running it (see Clock.running)
+    void load_job(PCB job, CPU cpu) {
+        // The job is already resident in RAM, restore its context onto the CPU
         cpu.setcurrent_job(job);
         cpu.setregisters(job.getregisters());
-        cpu.resetProgramCounter();
-        job.setStartTime(System.currentTimeMillis());
-        int total_size = job.getTotalSize();
-        int diskStartIndex = job.getDiskStart();
-        int ramStartIndex = access_ram(total_size, diskStartIndex);
-        int ramEndIndex = ramStartIndex + total_size;
+        cpu.setProgramCounter(job.getSavedPc());
+        if (job.getStartTime() < 0) {
+            job.setStartTime(cpu.getClock());
+        }
+        cpu.getCache().load(job);
         job.setCurrrentCPU(cpu);
-        job.setRamStart(ramStartIndex);
-        job.setRamEnd(ramEndIndex);
-        System.out.println(job);
+        if (job.getContextSwitches() > 0) {
+            cpu.charge(sim.clock.context_switch_cost);
+            job.addRestore(sim.clock.context_switch_cost);
+        }
+        sim.events.log(EventLog.event.DISPATCH, cpu, job);
     }
 
-    static synchronized int access_ram(int total_size, int diskStartIndex) {
-        int ramStartIndex = MMU.left(total_size);
-        for(int i = ramStartIndex; i < ramStartIndex + total_size; i++) {
-            MMU.store_ram(i, MMU.load_disk(diskStartIndex + i - ramStartIndex));
-        }
-        return ramStartIndex;
+    //Suspend a job whose quantum ran out: save its pc and registers into the PCB,
+    //write its dirty cache lines back to memory and put it back in the ready queue
+    void preempt(PCB job, CPU cpu) {
+        job.saveContext(cpu.getProgramCounter(), cpu.getregisters());
+        cpu.getCache().flush();
+        cpu.setcurrent_job(null);
+        cpu.charge(sim.clock.context_switch_cost);
+        job.addContextSwitch(sim.clock.context_switch_cost);
+        sim.events.log(EventLog.event.PREEMPT, cpu, job);
+        sim.scheduler.requeue(job, cpu.getClock());
     }
 
-    static void unload_job(PCB job, CPU cpu) {
-        job.setCompletionTime(System.currentTimeMillis());
+    //Take a job off the CPU while its I/O request is in flight, like preempt, but the job waits
+    //for the channel's completion interrupt instead of going back in the ready queue
+    void block(PCB job, CPU cpu, IOChannel.Request request) {
+        job.saveContext(cpu.getProgramCounter(), cpu.getregisters());
+        cpu.getCache().flush();
+        cpu.setcurrent_job(null);
+        cpu.charge(sim.clock.context_switch_cost);
+        job.addContextSwitch(sim.clock.context_switch_cost);
+        job.setJobState(PCB.JobState.BLOCKED);
+        sim.events.log(EventLog.event.BLOCK, cpu, job);
+        sim.io.submit(request, cpu, cpu.getClock());
+    }
+
+    void unload_job(PCB job, CPU cpu) {
+        cpu.getCache().flush();
+        if (!sim.paging) {
+            save_written(job);
+        }
+        job.setCompletionTime(cpu.getClock());
+        sim.metrics.finished(job);
+        sim.events.log(EventLog.event.FINISH, cpu, job);
         job.setregisters(cpu.getregisters());
         cpu.setcurrent_job(null);
+        sim.scheduler.finished(job);
+    }
+
+    //Persist a finished job's results: copy every word it wrote, output and temp buffers and any
+    //code or input it overwrote, from RAM back to its disk image, one copy per contiguous run.
+    //In paging mode the MMU already saves dirty pages when it releases them, which leaves the
+    //same image since the clean words of a page are still what is on disk.
+    void save_written(PCB job) {
+        BitSet dirty = job.getDirtyWords();
+        int end = job.getTotalSize();
+        int from = dirty.nextSetBit(0);
+        while (from >= 0 && from < end) {
+            int to = Math.min(dirty.nextClearBit(from), end);
+            sim.mmu.copy_to_disk(job.getRamStart() + from, job.getDiskStart() + from, to - from);
+            from = dirty.nextSetBit(to);
+        }
     }
 }
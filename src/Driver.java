@@ -1,52 +1,20 @@
 import java.io.IOException;
-import java.util.concurrent.*;
 
 //This is the main class
 
 public class Driver {
-    static int disk_size = 2048;
-    static int ram_size = 1024;
-    static int cache_size = 128;
-    static int thread_delay = 0;
-    
 
-    public static void main(String[] args) throws InterruptedException, IOException, BrokenBarrierException {
-        exec(1, Scheduler.scheduler.FIFO);
-        exec(1, Scheduler.scheduler.PRIORITY);
-    }
-
-    static void reset(Scheduler.scheduler policy) {
-        Scheduler.instructions.clear();
-        Scheduler.jobs.clear();
-        Scheduler.policy = policy;
-        Loader.loadFile();
-        MMU.init();
-    }
-
-
-    static void exec(int cores, Scheduler.scheduler policy) throws IOException, InterruptedException {
-        // Reset simulation
-        reset(policy);
-
-        // Initialize MetricCollector to a new file
-        Metrics.init(policy.toString() + ".csv");
-
-        // Create CPU threads without starting
-        for (int i = 0; i < cores; i++) {
-            CPU cpu = new CPU(i);
-            Scheduler.add_CPU(cpu);
+    // Runs the given policies by name, or every policy when none are given.
+    // Each run is a Simulation of its own on one CPU and writes metrics/<POLICY>.csv.
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length == 0) {
+            for (Scheduler.scheduler policy : Scheduler.scheduler.values()) {
+                new Simulation(1, policy).exec();
+            }
+        } else {
+            for (String policy : args) {
+                new Simulation(1, Scheduler.scheduler.valueOf(policy.toUpperCase())).exec();
+            }
         }
-
-        // Use ExecutorService to start threads all at once
-        ExecutorService executorService = Executors.newCachedThreadPool();
-        Metrics.start_time(System.currentTimeMillis());
-        for (CPU cpu : Scheduler.instructions) {
-            executorService.execute(cpu);
-        }
-
-        // Wait for all threads to complete
-        executorService.shutdown();
-        executorService.awaitTermination(5, TimeUnit.MINUTES);
-        Metrics.print_metrics();
     }
 }
@@ -0,0 +1,180 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Log of what the dispatcher does to jobs, one CSV line per event, written to
+// metrics/<POLICY>-events.csv when a simulation runs with exec.
+// CPUs never write anything themselves. They copy an event's numbers into the next free entry of a
+// ring of preallocated entries and carry on, and a writer thread formats and writes the entries in
+// the order they were claimed. Claiming an entry is one atomic increment, so CPUs on any number of
+// threads log without a lock and without allocating. If the writer falls a whole ring behind, a CPU
+// waits for it to free an entry rather than drop the event.
+class EventLog {
+
+    // OFF logs nothing and costs one comparison per event, JOBS logs jobs being dispatched and
+    // finishing, ALL also logs every preemption and I/O block
+    level log_level = level.ALL;
+
+    // Entries in the ring, a power of two
+    int capacity = 1 << 12;
+
+    private Writer out;
+    private Entry[] ring;
+    private int mask;
+
+    // Next sequence number to claim, and the first one the writer has not written yet
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long written;
+
+    private Thread writer;
+    private volatile boolean stopping;
+
+    //log to a new file under metrics
+    void init(String filename) throws IOException {
+        init(new PrintWriter(new File("./metrics/" + filename)));
+    }
+
+    //or anywhere else
+    void init(Writer out) {
+        this.out = new BufferedWriter(out);
+    }
+
+    // Start the writer before the CPUs run. A log that was never initialized stays off.
+    void start() {
+        if (out == null || log_level == level.OFF) {
+            return;
+        }
+        mask = Integer.highestOneBit(Math.max(capacity, 2)) - 1;
+        ring = new Entry[mask + 1];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Entry();
+        }
+        claimed.set(0);
+        written = 0;
+        stopping = false;
+        writer = new Thread(this::drain, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Write whatever is left once the CPUs are done, and close the file
+    void stop() throws IOException, InterruptedException {
+        if (writer != null) {
+            stopping = true;
+            LockSupport.unpark(writer);
+            writer.join();
+            writer = null;
+        }
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    // Called by a CPU as the dispatcher acts on a job, at the CPU's time. The PC is the CPU's, which
+    // is where the job is, or was when it left the CPU. The job's saved PC is stale while it runs.
+    void log(event kind, CPU cpu, PCB job) {
+        if (writer == null || kind.verbosity.ordinal() > log_level.ordinal()) {
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        while (sequence - written > mask) {
+            // The writer has not freed this entry yet
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        Entry entry = ring[(int) sequence & mask];
+        entry.kind = kind;
+        entry.time = cpu.getClock();
+        entry.cpu = cpu.getCpuId();
+        entry.job = job.getJobId();
+        entry.priority = job.getPriority();
+        entry.state = job.getJobState();
+        entry.pc = cpu.getProgramCounter();
+        entry.instructions = job.getProgramCounter();
+        entry.context_switches = job.getContextSwitches();
+        entry.ram_start = job.getRamStart();
+        entry.ram_end = job.getRamEnd();
+        entry.published = sequence;
+    }
+
+    // The writer thread: write entries in sequence order as they are published, and sleep a little
+    // whenever it catches up
+    private void drain() {
+        StringBuilder line = new StringBuilder(128);
+        long next = 0;
+        try {
+            out.write("Time,Event,CPU ID,Job ID,Priority,Job State,PC,Instructions,Context Switches,RAM Start,RAM End\n");
+            while (true) {
+                Entry entry = ring[(int) next & mask];
+                if (entry.published == next) {
+                    line.setLength(0);
+                    line.append(entry.time).append(',').append(entry.kind).append(',').append(entry.cpu)
+                            .append(',').append(entry.job).append(',').append(entry.priority).append(',')
+                            .append(entry.state).append(',').append(entry.pc).append(',')
+                            .append(entry.instructions).append(',').append(entry.context_switches).append(',')
+                            .append(entry.ram_start).append(',').append(entry.ram_end).append('\n');
+                    out.append(line);
+                    written = ++next;
+                } else if (stopping && next == claimed.get()) {
+                    break;
+                } else {
+                    out.flush();
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Keep freeing entries so CPUs never wait on a log that cannot be written
+            while (!stopping || written != claimed.get()) {
+                if (ring[(int) written & mask].published == written) {
+                    written++;
+                } else {
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+        }
+    }
+
+    // One event, reused every time the ring wraps around
+    private static class Entry {
+        // Sequence number of the event in it once its fields are written
+        volatile long published = -1;
+        event kind;
+        long time;
+        int cpu;
+        int job;
+        int priority;
+        PCB.JobState state;
+        int pc;
+        int instructions;
+        int context_switches;
+        int ram_start;
+        int ram_end;
+    }
+
+    public enum level {
+        OFF,
+        JOBS,
+        ALL
+    }
+
+    public enum event {
+        DISPATCH(level.JOBS),
+        PREEMPT(level.ALL),
+        BLOCK(level.ALL),
+        FINISH(level.JOBS);
+
+        // The lowest log_level that logs it
+        final level verbosity;
+
+        event(level verbosity) {
+            this.verbosity = verbosity;
+        }
+    }
+}
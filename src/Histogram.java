@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+// Distribution of non-negative values, such as the waiting times of every job, in a fixed amount of
+// memory however many values it counts. Values below 128 get a bucket each, larger ones share
+// buckets 1/64 of their power of two wide, so a percentile read back is within 1.6% of the value
+// recorded (like HdrHistogram). The count, sum, min and max are exact.
+class Histogram {
+
+    // 2^SUB_BITS buckets below 2^SUB_BITS, then 2^(SUB_BITS-1) for every power of two above
+    private static final int SUB_BITS = 7;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int HALF = SUB >> 1;
+
+    private final long[] counts = new long[index(Long.MAX_VALUE) + 1];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    // Negative values, such as a job that never ran, count as 0
+    void record(long value) {
+        value = Math.max(value, 0);
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    long count() {
+        return count;
+    }
+
+    double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    long max() {
+        return max;
+    }
+
+    // The value percent of all values are at or below, 0 if there are none
+    long percentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(Math.max(highest(i), min), max);
+            }
+        }
+        return max;
+    }
+
+    // Bucket of a value: the value itself below SUB, otherwise its top SUB_BITS bits, placed after
+    // the buckets of every smaller power of two
+    private static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    // Largest value that falls into bucket i
+    private static long highest(int i) {
+        if (i < SUB) {
+            return i;
+        }
+        int shift = (i - HALF) / HALF;
+        long lowest = (long) (i - shift * HALF) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
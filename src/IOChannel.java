@@ -0,0 +1,65 @@
+// I/O channel.
+// With asynchronous set, RD and WR do not stall the CPU. The job hands the transfer to the channel
+// and blocks, and the CPU goes on to another ready job. latency ticks later the channel moves the
+// word like a DMA transfer and interrupts the CPU that issued the request, whose handler makes the
+// job ready again (see CPU.interrupt).
+// Otherwise the CPU stalls for latency ticks and the job keeps it.
+// Completions are timed events in simulated time, see Clock.
+class IOChannel {
+
+    boolean asynchronous = true;
+    int latency = 20;
+
+    private final Simulation sim;
+
+    IOChannel(Simulation sim) {
+        this.sim = sim;
+    }
+
+    // A read of a job's word into one of its registers
+    static Request read(PCB job, int register, int address) {
+        return new Request(job, false, register, address, 0);
+    }
+
+    // A write of a value to one of a job's words
+    static Request write(PCB job, int address, int data) {
+        return new Request(job, true, 0, address, data);
+    }
+
+    // Start a transfer for a job that has just blocked on the CPU at the given time
+    void submit(Request request, CPU cpu, long time) {
+        request.cpu = cpu;
+        request.issued = time;
+        sim.clock.schedule(time + latency, () -> complete(request, time + latency));
+    }
+
+    private void complete(Request request, long time) {
+        PCB job = request.job;
+        if (request.write) {
+            sim.mmu.store_word(job, request.address, request.data);
+            job.wroteWord(request.address);
+        } else {
+            job.getregisters()[request.register].data = sim.mmu.load_word(job, request.address);
+        }
+        job.addIoWait(time - request.issued);
+        request.cpu.interrupt(request, time);
+    }
+
+    static class Request {
+        final PCB job;
+        final boolean write;
+        final int register;
+        final int address;
+        final int data;
+        CPU cpu;
+        long issued;
+
+        Request(PCB job, boolean write, int register, int address, int data) {
+            this.job = job;
+            this.write = write;
+            this.register = register;
+            this.address = address;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+// Pre-decoded instruction format.
+// A 32-bit instruction word is decoded once into a packed long so the CPU can
+// dispatch on an int opcode without any String or BigInteger work.
+//
+// Packed layout (low to high bits):
+//   0-23  address (raw, in bytes)
+//   24-27 reg3
+//   28-31 reg2
+//   32-35 reg1
+//   36-41 opcode
+//   42-43 format
+final class Instruction {
+
+    // Instruction formats, bits 31-30 of the word
+    static final int ARITHMETIC = 0;
+    static final int CONDITIONAL = 1;
+    static final int UNCONDITIONAL = 2;
+    static final int IO = 3;
+
+    // Opcodes, bits 29-24 of the word
+    static final int RD = 0x00;
+    static final int WR = 0x01;
+    static final int ST = 0x02;
+    static final int LW = 0x03;
+    static final int MOV = 0x04;
+    static final int ADD = 0x05;
+    static final int SUB = 0x06;
+    static final int MUL = 0x07;
+    static final int DIV = 0x08;
+    static final int AND = 0x09;
+    static final int OR = 0x0A;
+    static final int MOVI = 0x0B;
+    static final int ADDI = 0x0C;
+    static final int MULI = 0x0D;
+    static final int DIVI = 0x0E;
+    static final int LDI = 0x0F;
+    static final int SLT = 0x10;
+    static final int SLTI = 0x11;
+    static final int HLT = 0x12;
+    static final int NOP = 0x13;
+    static final int JMP = 0x14;
+    static final int BEQ = 0x15;
+    static final int BNE = 0x16;
+    static final int BEZ = 0x17;
+    static final int BNZ = 0x18;
+    static final int BGZ = 0x19;
+    static final int BLZ = 0x1A;
+
+    // Mnemonics, indexed by opcode
+    static final String[] opcd = {"RD", "WR", "ST", "LW", "MOV", "ADD", "SUB", "MUL", "DIV", "AND",
+            "OR", "MOVI", "ADDI", "MULI", "DIVI", "LDI", "SLT", "SLTI", "HLT", "NOP", "JMP", "BEQ",
+            "BNE", "BEZ", "BNZ", "BGZ", "BLZ"};
+
+    private Instruction() {
+    }
+
+    // Decode a raw instruction word. Fields that the format does not define are left zero.
+    static long decode(int word) {
+        int format = word >>> 30;
+        int opcode = (word >>> 24) & 0x3F;
+        int reg1 = 0;
+        int reg2 = 0;
+        int reg3 = 0;
+        int address = 0;
+        switch (format) {
+            case ARITHMETIC: {
+                reg1 = (word >>> 20) & 0xF;
+                reg2 = (word >>> 16) & 0xF;
+                reg3 = (word >>> 12) & 0xF;
+                break;
+            }
+            case CONDITIONAL:
+            case IO: {
+                reg1 = (word >>> 20) & 0xF;
+                reg2 = (word >>> 16) & 0xF;
+                address = word & 0xFFFF;
+                break;
+            }
+            case UNCONDITIONAL: {
+                address = word & 0xFFFFFF;
+                break;
+            }
+        }
+        return ((long) format << 42)
+                | ((long) opcode << 36)
+                | ((long) reg1 << 32)
+                | ((long) reg2 << 28)
+                | ((long) reg3 << 24)
+                | address;
+    }
+
+    static int format(long insn) {
+        return (int) (insn >>> 42) & 0x3;
+    }
+    static int opcode(long insn) {
+        return (int) (insn >>> 36) & 0x3F;
+    }
+    static int reg1(long insn) {
+        return (int) (insn >>> 32) & 0xF;
+    }
+    static int reg2(long insn) {
+        return (int) (insn >>> 28) & 0xF;
+    }
+    static int reg3(long insn) {
+        return (int) (insn >>> 24) & 0xF;
+    }
+    static int address(long insn) {
+        return (int) insn & 0xFFFFFF;
+    }
+    // Addresses are byte offsets; words are 4 bytes wide
+    static int addressIndex(long insn) {
+        return address(insn) >>> 2;
+    }
+}
@@ -1,22 +1,119 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.Consumer;
 
 /**
  Loads information form the data into disk array.
+ The text program file is only parsed when its compiled image is missing or out of date,
+ see ProgramImage.
  */
 
 class Loader {
-    static void loadFile() {
+    String program_file = "src/Program-File-Wordversion-30-JOBS.txt";
+
+    // Load through the compiled image cache instead of parsing the text every run
+    boolean use_image = true;
+
+    // Load on a background thread while the CPUs run, see streamFile
+    boolean streaming = false;
+
+    private final Simulation sim;
+
+    // Arrival time of the latest job streamed in
+    private long last_arrival;
+
+    Loader(Simulation sim) {
+        this.sim = sim;
+    }
+
+    //Load every job into the long-term scheduler's pool before the run starts
+    void loadFile() {
+        load(sim.long_term::submit);
+    }
+
+    //Write the program file's image now if it is missing or out of date, without submitting any jobs.
+    //Simulations that start together on the same file then all find it current.
+    void compile() {
+        sim.mmu.init();
+        load(pcb -> { });
+    }
+
+    //Streaming load: each job arrives as soon as its END marker is read, so the CPUs can start on it
+    //while the rest of the file is still being parsed. It arrives in simulated time once every word up
+    //to its last has been read at Clock.load_cost each, and the clock holds the CPUs back until the
+    //loader gets there (see Clock.arrival), so the timings do not depend on how fast this thread is.
+    void streamFile() {
+        last_arrival = 0;
+        try {
+            load(pcb -> {
+                long arrival = (long) (pcb.getDiskStart() + pcb.getTotalSize()) * sim.clock.load_cost;
+                last_arrival = arrival;
+                sim.clock.arrival(arrival, () -> {
+                    pcb.setArrivalTime(arrival);
+                    sim.long_term.submit(pcb);
+                    sim.long_term.admit(arrival);
+                });
+            });
+        } finally {
+            sim.clock.arrival(last_arrival, sim.scheduler::end_of_input);
+            sim.clock.end_of_arrivals();
+        }
+    }
+
+    private void load(Consumer<PCB> publish) {
+        File text = new File(program_file);
+        boolean image_only = ProgramImage.is_image(text);
+        File image = image_only ? text : ProgramImage.image_for(text);
+        if (image_only || use_image && ProgramImage.is_current(text, image)) {
+            try {
+                for (PCB pcb : ProgramImage.load(image, sim.mmu)) {
+                    publish.accept(pcb);
+                }
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            // There is no text to fall back on for a bare image
+            if (image_only) {
+                return;
+            }
+        }
+        // The image is made of each job's words as parsed. A streamed job may already be running and
+        // writing its results to disk by the time the whole file is read.
+        List<int[]> words = new ArrayList<>();
+        List<PCB> jobs = parseFile(text, pcb -> {
+            if (use_image) {
+                words.add(Arrays.copyOfRange(sim.mmu.disk, pcb.getDiskStart(), pcb.getDiskStart() + pcb.getTotalSize()));
+            }
+            publish.accept(pcb);
+        });
+        if (use_image && jobs != null) {
+            try {
+                ProgramImage.write(image, jobs, words);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Parse a text program file onto disk, publishing each job once it is complete.
+    // Returns the jobs or null if the file is missing.
+    List<PCB> parseFile(File file, Consumer<PCB> publish) {
         //set up the variable for the index, string line, and a null PCB
         int index = 0;
         String strline;
         PCB pcb = null;
+        List<PCB> jobs = new ArrayList<>();
         // try to look for file, if not exception is thrown
         try {
-            // creates file and scanner
-            File file = new File("src/Program-File-Wordversion-30-JOBS.txt");
+            // creates scanner, every word takes at least 11 bytes of the file so that bounds the disk needed
             Scanner sc = new Scanner(file);
+            sim.mmu.ensure_disk((int) (file.length() / 11) + 1);
 
             while(sc.hasNext()) {
                 strline = sc.nextLine();
@@ -37,8 +134,8 @@ class Loader {
                         }
                         case "END": {
                             if(pcb != null) {
-                                pcb.setJobState(PCB.JobState.READY);
-                                Scheduler.addJob(pcb);
+                                jobs.add(pcb);
+                                publish.accept(pcb);
                             }
                             break;
                         }
@@ -46,15 +143,17 @@ class Loader {
                 }
                 else {
                     String code = strline.substring(2, 10);
-                    MMU.store_disk(index, code);
+                    sim.mmu.store_disk(index, Integer.parseUnsignedInt(code, 16));
                     index++;
                 }
             }
 
             sc.close();
+            return jobs;
         }
         catch (FileNotFoundException e) {
             e.printStackTrace();
+            return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+// Long-term scheduler
+// Jobs wait on disk in a job pool until there is room for them in RAM. Admitted jobs
+// stay resident until they finish, then the freed space is used to admit the next wave.
+class LongTermScheduler {
+
+    private final Simulation sim;
+
+    // Jobs on disk that have not been admitted yet, in the order the policy would run them
+    private ReadyQueue pool = new ReadyQueue(Scheduler.scheduler.FIFO, 1);
+
+    LongTermScheduler(Simulation sim) {
+        this.sim = sim;
+    }
+
+    void init() {
+        pool = new ReadyQueue(sim.scheduler.policy, sim.scheduler.mlfq_levels);
+    }
+
+    //A job has been loaded onto disk, it waits in the pool until the next admit.
+    //Streamed jobs are submitted by their arrival on whichever thread runs it, and admit has to
+    //poll the job it peeked and loaded, so submitting takes the same lock.
+    synchronized void submit(PCB job) {
+        sim.scheduler.submitted(job);
+        pool.add(job);
+    }
+
+    //Admit waiting jobs in policy order, at the given simulated time, for as long as the next one fits in RAM
+    synchronized void admit(long time) {
+        PCB job;
+        while ((job = pool.peek()) != null && load(job)) {
+            pool.poll();
+            job.setJobState(PCB.JobState.READY);
+            sim.scheduler.addJob(job, time);
+        }
+    }
+
+    //A job finished at the given simulated time, give back its memory and fill the space with waiting jobs
+    void release(PCB job, long time) {
+        sim.mmu.release(job);
+        admit(time);
+    }
+
+    //Copy a job from disk into RAM. Returns false if there is no hole big enough right now.
+    private boolean load(PCB job) {
+        int total_size = job.getTotalSize();
+        if (sim.paging) {
+            // Nothing is copied up front, the MMU pages the job in as it runs
+            job.setPageTable(new PageTable(total_size, sim.page_size));
+            return true;
+        }
+        if (total_size > sim.ram_size) {
+            throw new IllegalStateException("Job " + job.getJobId() + " needs " + total_size
+                    + " words but RAM only has " + sim.ram_size);
+        }
+        int ramStartIndex = sim.mmu.allocate(total_size);
+        if (ramStartIndex < 0) {
+            return false;
+        }
+        sim.mmu.copy_to_ram(job.getDiskStart(), ramStartIndex, total_size);
+        job.setRamStart(ramStartIndex);
+        job.setRamEnd(ramStartIndex + total_size);
+        return true;
+    }
+}
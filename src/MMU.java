@@ -6,68 +6,216 @@ import java.util.Scanner;
 //Memory Management Unit
 class MMU
 {
-    static String[] disk = new String[Driver.disk_size];
+    private final Simulation sim;
 
-    static String[] ram = new String[Driver.ram_size];
+    //Words are stored as ints, an instruction or data word is 32 bits
+    int[] disk = new int[0];
+
+    int[] ram = new int[0];
+
+    //Tracks which sections of ram are free
+    RamAllocator allocator;
+
+    //Paging mode: ram is split into frames of page_size words
+    private int page_size;
+    private PCB[] frame_owner;
+    private int[] frame_page;
+    private int[] free_frames;
+    private int free_count;
+    private ReplacementPolicy replacement;
+
+    MMU(Simulation sim) {
+        this.sim = sim;
+    }
     
-    static void init() {
-        for (int i = 0; i < ram.length; i++) {
-            store_ram(i, "");
-        }
+    //Empty disk and ram of the simulation's sizes
+    void init() {
+        disk = new int[sim.disk_size];
+        ram = new int[sim.ram_size];
+        allocator = new RamAllocator(sim.ram_size);
+        page_size = sim.page_size;
+        init_frames();
     }
 
-    static int left(int size) {
-        int ammount_left = 0;
-        for (int i = 0; i < ram.length; i++) {
-            if (ammount_left == size) {
-                return i - size;
-            }
-
-            if(ram[i].isEmpty()) {
-                ammount_left++;
-            } else {
-                ammount_left = 0;
-            }
+    private synchronized void init_frames() {
+        int frames = ram.length / page_size;
+        frame_owner = new PCB[frames];
+        frame_page = new int[frames];
+        free_frames = new int[frames];
+        for (int i = 0; i < frames; i++) {
+            free_frames[i] = frames - 1 - i;
         }
+        free_count = frames;
+        replacement = ReplacementPolicy.create(sim.replacement, frames);
+    }
 
-        return -1;
+    //Reserve a contiguous section of ram, returns -1 if no hole is big enough
+    int allocate(int size) {
+        return allocator.allocate(size);
     }
     
     //We need to clear a section of memory
-    static void clear_all(int inclusiveStart, int exclusiveEnd) {
-        for (int i = inclusiveStart; i < exclusiveEnd; i++) {
-            store_ram(i, "");
-        }
+    void clear_all(int inclusiveStart, int exclusiveEnd) {
+        allocator.free(inclusiveStart, exclusiveEnd - inclusiveStart);
     }
 
-    //Load values into ram and disk
-    static String load_ram(int address) {
-        if (ram[address].isEmpty()) {
-            return "";
+    //Give back all the memory a job holds once it is done
+    void release(PCB job) {
+        if (sim.paging) {
+            release_pages(job);
         } else {
-            return ram[address].substring(0, 8);
+            clear_all(job.getRamStart(), job.getRamEnd());
         }
     }
-    static String load_disk(int address) {
-        return disk[address].substring(0, 8);
+
+    //Load values into ram and disk
+    int load_ram(int address) {
+        return ram[address];
+    }
+    int load_disk(int address) {
+        return disk[address];
     }
 
     //store values we just loaded
-    static void store_ram(int address, String data) {
+    void store_ram(int address, int data) {
         ram[address] = data;
     }
-    static void store_disk(int address, String data) {
+    void store_disk(int address, int data) {
         disk[address] = data;
     }
+
+    //Read or write one word of a job's image wherever it lives.
+    //Words past the end of the image read as zero and are never written.
+    int load_word(PCB job, int address) {
+        if (address >= job.getTotalSize()) {
+            return 0;
+        }
+        if (sim.paging) {
+            return read(job, address);
+        }
+        return ram[job.getRamStart() + address];
+    }
+    void store_word(PCB job, int address, int data) {
+        if (address >= job.getTotalSize()) {
+            return;
+        }
+        if (sim.paging) {
+            write(job, address, data);
+        } else {
+            ram[job.getRamStart() + address] = data;
+        }
+        job.markDirty(address, address + 1);
+    }
+
+    //Grow the disk if a program needs more words than disk_size
+    void ensure_disk(int words) {
+        if (words > disk.length) {
+            disk = new int[words];
+        }
+    }
+
+    //Copy a block of words from disk into ram in one go
+    void copy_to_ram(int diskAddress, int ramAddress, int length) {
+        System.arraycopy(disk, diskAddress, ram, ramAddress, length);
+    }
+    void copy_to_ram(int[] words, int offset, int ramAddress, int length) {
+        System.arraycopy(words, offset, ram, ramAddress, length);
+    }
+    void copy_to_disk(int ramAddress, int diskAddress, int length) {
+        System.arraycopy(ram, ramAddress, disk, diskAddress, length);
+    }
     
     //Ram usage will be the ammount of words loaded into memory
-    static int ram_usage() {
-        int usage = 0;
-        for (int i = 0; i < ram.length; i++) {
-            if(!ram[i].equals("")) {
-                usage++;
+    int ram_usage() {
+        if (sim.paging) {
+            return frames_used() * page_size;
+        }
+        return allocator.used();
+    }
+
+    private synchronized int frames_used() {
+        return frame_owner.length - free_count;
+    }
+
+    //Paging mode: frames in all and free
+    synchronized int frames() {
+        return frame_owner.length;
+    }
+    synchronized int free_frames() {
+        return free_count;
+    }
+
+    //Read a word from a job's logical address space, faulting its page in if needed
+    synchronized int read(PCB job, int address) {
+        int frame = translate(job, address / page_size);
+        return ram[frame * page_size + address % page_size];
+    }
+
+    //Write a word to a job's logical address space, the page is saved to disk when it leaves ram
+    synchronized void write(PCB job, int address, int data) {
+        int page = address / page_size;
+        int frame = translate(job, page);
+        job.getPageTable().setDirty(page);
+        ram[frame * page_size + address % page_size] = data;
+    }
+
+    private int translate(PCB job, int page) {
+        int frame = job.getPageTable().frame(page);
+        if (frame < 0) {
+            frame = page_fault(job, page);
+        } else {
+            replacement.accessed(frame);
+        }
+        return frame;
+    }
+
+    //Bring a page in from disk, evicting another page if there is no free frame.
+    //The CPU running the job stalls for the transfer, a fault from an I/O completion costs its CPU nothing.
+    private int page_fault(PCB job, int page) {
+        job.incrementPageFaults();
+        CPU cpu = job.getCurrrentCPU();
+        if (cpu != null && cpu.getcurrent_job() == job) {
+            cpu.page_fault();
+        }
+        int frame;
+        if (free_count > 0) {
+            frame = free_frames[--free_count];
+        } else {
+            frame = replacement.victim();
+            PCB owner = frame_owner[frame];
+            write_back(owner, frame_page[frame], frame);
+            owner.getPageTable().unmap(frame_page[frame]);
+        }
+        int offset = page * page_size;
+        int length = Math.min(page_size, job.getTotalSize() - offset);
+        System.arraycopy(disk, job.getDiskStart() + offset, ram, frame * page_size, length);
+        job.getPageTable().map(page, frame);
+        frame_owner[frame] = job;
+        frame_page[frame] = page;
+        replacement.loaded(frame);
+        return frame;
+    }
+
+    //Save a page to the owner's disk image if it was written to
+    private void write_back(PCB job, int page, int frame) {
+        if (job.getPageTable().isDirty(page)) {
+            int offset = page * page_size;
+            int length = Math.min(page_size, job.getTotalSize() - offset);
+            System.arraycopy(ram, frame * page_size, disk, job.getDiskStart() + offset, length);
+        }
+    }
+
+    private synchronized void release_pages(PCB job) {
+        PageTable table = job.getPageTable();
+        for (int page = 0; page < table.pages(); page++) {
+            int frame = table.frame(page);
+            if (frame >= 0) {
+                write_back(job, page, frame);
+                table.unmap(page);
+                frame_owner[frame] = null;
+                replacement.freed(frame);
+                free_frames[free_count++] = frame;
             }
         }
-        return usage;
     }
-}
\ No newline at end of file
+}
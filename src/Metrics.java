@@ -2,46 +2,271 @@ import java.io.*;
 
 public class Metrics {
 
-    static long globalStartTime;
+    private final Simulation sim;
 
-    static BufferedWriter bufferedWriter;
+    //distributions of the times of every finished job, see finished
+    final Histogram waiting_times = new Histogram();
+    final Histogram turnaround_times = new Histogram();
+    final Histogram response_times = new Histogram();
+    final Histogram run_times = new Histogram();
+    private long instructions;
+
+    //wall clock time the run took
+    private long wall_start;
+    private long wall_time;
+
+    BufferedWriter bufferedWriter;
+
+    Metrics(Simulation sim) {
+        this.sim = sim;
+    }
 
     //create new file to track metrics
-    static void init(String filename) throws IOException {
+    void init(String filename) throws IOException {
         File metrics = new File("./metrics/" + filename);
-        bufferedWriter = new BufferedWriter(new PrintWriter(metrics));
+        init(new PrintWriter(metrics));
+    }
+
+    //or write them somewhere else, such as nowhere for a sweep that only wants the summary
+    void init(Writer out) {
+        bufferedWriter = new BufferedWriter(out);
     }
 
     //formatting of job metrics
-    static void list_metrics() throws IOException {
+    void list_metrics() throws IOException {
         bufferedWriter.write("# Job Metrics\n");
         //metrics from specification document
-        bufferedWriter.write("Job ID,Waiting Time,Completion Time,I/O Processes,Job RAM % Used,Job Cache % Used\n");
-        for (PCB job : Scheduler.jobs) {
-            long waiting_time = job.getStartTime() - globalStartTime;
-            //calculate percentage of cache each job uses
-            double job_cache = (double) Math.round((double) job.getCacheUsage() / Driver.cache_size * 1000) / 1000;
+        bufferedWriter.write("Job ID,Response Time,Completion Time,I/O Processes,Job RAM % Used,Cache Hits,Cache Misses,Cache Evictions,Cache Hit %,Page Faults,Context Switches,Save Time,Restore Time,I/O Wait Time,Stall Time\n");
+        for (PCB job : sim.scheduler.jobs) {
+            //time from the job's arrival to its first dispatch
+            long response_time = job.getStartTime() - job.getArrivalTime();
+            //hit rate of the job's memory accesses through the CPU cache
+            int accesses = job.getCacheHits() + job.getCacheMisses();
+            double job_cache = accesses == 0 ? 0 : (double) Math.round((double) job.getCacheHits() / accesses * 1000) / 1000;
             //calculate percentage of ram each job uses
-            double job_ram = (double) Math.round((double) job.getTotalSize() / Driver.ram_size * 1000) / 1000;
+            double job_ram = (double) Math.round((double) job.getTotalSize() / sim.ram_size * 1000) / 1000;
 
             //if we use commas to separate everything we can upload to excel to create graphs
-            bufferedWriter.write(job.getJobId() + "," + waiting_time + "," +
+            bufferedWriter.write(job.getJobId() + "," + response_time + "," +
                     job.getCompletionTime() + "," + job.getNumIoProcesses() + "," + job_ram
-                    + "," + job_cache + "\n");
+                    + "," + job.getCacheHits() + "," + job.getCacheMisses() + "," + job.getCacheEvictions()
+                    + "," + job_cache + "," + job.getPageFaults() + ","
+                    + job.getContextSwitches() + "," + job.getSaveTime() + "," + job.getRestoreTime() + "," + job.getIoWait()
+                    + "," + job.getStallTime() + "\n");
+        }
+    }
+
+    //time each CPU spent running jobs, stalled on memory or synchronous I/O and idle, out of the whole run
+    void list_cpu_metrics() throws IOException {
+        long makespan = makespan();
+        bufferedWriter.write("# CPU Metrics\n");
+        bufferedWriter.write("CPU ID,Dispatches,Busy Time,Stall Time,Idle Time,Utilization %,I/O Interrupts\n");
+        for (CPU cpu : sim.scheduler.instructions) {
+            long idle = makespan - cpu.getBusyTime() - cpu.getStallTime();
+            double utilization = makespan == 0 ? 0 : (double) Math.round((double) cpu.getBusyTime() / makespan * 1000) / 1000;
+            bufferedWriter.write(cpu.getCpuId() + "," + cpu.getDispatches() + "," + cpu.getBusyTime() + ","
+                    + cpu.getStallTime() + "," + idle + "," + utilization + "," + cpu.getInterrupts() + "\n");
+        }
+    }
+
+    //a job finished. Its response time is the time from its arrival to its first dispatch and its
+    //turnaround time the time from its arrival to completion. Jobs arrive when the run starts unless
+    //the program file streams in (see Loader.streamFile). Its run time is the time spent
+    //executing its instructions, and it waited for whatever of its turnaround it was neither running,
+    //nor waiting for asynchronous I/O, nor stalled on a CPU. Context switches count as waiting.
+    synchronized void finished(PCB job) {
+        long turnaround = job.getStartTime() + job.getCompletionTime() - job.getArrivalTime();
+        long run = (long) job.getProgramCounter() * sim.clock.instruction_cost;
+        response_times.record(job.getStartTime() - job.getArrivalTime());
+        turnaround_times.record(turnaround);
+        run_times.record(run);
+        waiting_times.record(turnaround - run - job.getIoWait() - job.getStallTime());
+        instructions += job.getProgramCounter();
+    }
+
+    //mean, min, p50, p90, p99 and max of each time over every finished job
+    void list_latency_summary() throws IOException {
+        bufferedWriter.write("# Latency Summary\n");
+        bufferedWriter.write("Metric,Jobs,Mean,Min,p50,p90,p99,Max\n");
+        write_latency("Waiting Time", waiting_times);
+        write_latency("Turnaround Time", turnaround_times);
+        write_latency("Response Time", response_times);
+        write_latency("Run Time", run_times);
+    }
+
+    private void write_latency(String name, Histogram times) throws IOException {
+        bufferedWriter.write(name + "," + times.count() + "," + round(times.mean()) + "," + times.min() + ","
+                + times.percentile(50) + "," + times.percentile(90) + "," + times.percentile(99) + ","
+                + times.max() + "\n");
+    }
+
+    //jobs and instructions finished per simulated tick and per second of wall clock time, and the
+    //utilization and idle time of all CPUs together
+    void list_throughput() throws IOException {
+        long makespan = makespan();
+        long jobs = turnaround_times.count();
+        bufferedWriter.write("# Throughput\n");
+        bufferedWriter.write("Jobs,Instructions,Makespan,Wall Time (ms),Jobs/1000 Ticks,Instructions/Tick,Jobs/s,Instructions/s,Utilization %,Idle Time\n");
+        bufferedWriter.write(jobs + "," + instructions + "," + makespan + "," + round(wall_time / 1e6) + ","
+                + round(per_tick(jobs * 1000)) + "," + round(per_tick(instructions)) + ","
+                + round(per_second(jobs)) + "," + Math.round(per_second(instructions)) + ","
+                + round(utilization()) + "," + idle_time() + "\n");
+    }
+
+    //the run as JSON in metrics/<filename>: settings, throughput, time distributions and CPUs
+    void write_json(String filename) throws IOException {
+        try (Writer out = new BufferedWriter(new PrintWriter(new File("./metrics/" + filename)))) {
+            write_json(out);
+        }
+    }
+
+    void write_json(Writer out) throws IOException {
+        long makespan = makespan();
+        long jobs = turnaround_times.count();
+        out.write("{\n");
+        out.write("  \"policy\": \"" + sim.scheduler.policy + "\",\n");
+        out.write("  \"cores\": " + sim.cores + ",\n");
+        out.write("  \"paging\": " + sim.paging + ",\n");
+        out.write("  \"jobs\": " + jobs + ",\n");
+        out.write("  \"instructions\": " + instructions + ",\n");
+        out.write("  \"makespan\": " + makespan + ",\n");
+        out.write("  \"wall_time_ms\": " + round(wall_time / 1e6) + ",\n");
+        out.write("  \"throughput\": {\"jobs_per_1000_ticks\": " + round(per_tick(jobs * 1000))
+                + ", \"instructions_per_tick\": " + round(per_tick(instructions))
+                + ", \"jobs_per_second\": " + round(per_second(jobs))
+                + ", \"instructions_per_second\": " + Math.round(per_second(instructions)) + "},\n");
+        out.write("  \"utilization\": " + round(utilization()) + ",\n");
+        out.write("  \"idle_time\": " + idle_time() + ",\n");
+        out.write("  \"latency\": {\n");
+        out.write("    \"waiting\": " + json(waiting_times) + ",\n");
+        out.write("    \"turnaround\": " + json(turnaround_times) + ",\n");
+        out.write("    \"response\": " + json(response_times) + ",\n");
+        out.write("    \"run\": " + json(run_times) + "\n");
+        out.write("  },\n");
+        out.write("  \"cpus\": [");
+        String separator = "\n";
+        for (CPU cpu : sim.scheduler.instructions) {
+            long idle = makespan - cpu.getBusyTime() - cpu.getStallTime();
+            out.write(separator + "    {\"id\": " + cpu.getCpuId() + ", \"dispatches\": " + cpu.getDispatches()
+                    + ", \"busy_time\": " + cpu.getBusyTime() + ", \"stall_time\": " + cpu.getStallTime()
+                    + ", \"idle_time\": " + idle + ", \"utilization\": "
+                    + round(makespan == 0 ? 0 : (double) cpu.getBusyTime() / makespan)
+                    + ", \"io_interrupts\": " + cpu.getInterrupts() + "}");
+            separator = ",\n";
+        }
+        out.write("\n  ]\n");
+        out.write("}\n");
+    }
+
+    private static String json(Histogram times) {
+        return "{\"count\": " + times.count() + ", \"mean\": " + round(times.mean()) + ", \"min\": " + times.min()
+                + ", \"p50\": " + times.percentile(50) + ", \"p90\": " + times.percentile(90)
+                + ", \"p99\": " + times.percentile(99) + ", \"max\": " + times.max() + "}";
+    }
+
+    //totals for the whole run on one line, under summary_header
+    static String summary_header() {
+        return "Jobs,Makespan,Mean Response Time,Mean Completion Time,Cache Hit %,Page Faults,Context Switches,Utilization %,p99 Response Time,p99 Turnaround Time,Instructions/Tick";
+    }
+
+    String summary() {
+        long response = 0;
+        long completion = 0;
+        long hits = 0;
+        long accesses = 0;
+        long faults = 0;
+        long switches = 0;
+        for (PCB job : sim.scheduler.jobs) {
+            response += job.getStartTime() - job.getArrivalTime();
+            completion += job.getCompletionTime();
+            hits += job.getCacheHits();
+            accesses += job.getCacheHits() + job.getCacheMisses();
+            faults += job.getPageFaults();
+            switches += job.getContextSwitches();
+        }
+        int jobs = sim.scheduler.jobs.size();
+        long makespan = makespan();
+        return jobs + "," + makespan + "," + round(jobs == 0 ? 0 : (double) response / jobs) + ","
+                + round(jobs == 0 ? 0 : (double) completion / jobs) + ","
+                + round(accesses == 0 ? 0 : (double) hits / accesses) + "," + faults + "," + switches + ","
+                + round(utilization()) + "," + response_times.percentile(99) + ","
+                + turnaround_times.percentile(99) + "," + round(per_tick(instructions));
+    }
+
+    //busy time of every CPU over the time they all had
+    private double utilization() {
+        long busy = 0;
+        for (CPU cpu : sim.scheduler.instructions) {
+            busy += cpu.getBusyTime();
+        }
+        double cpu_time = (double) makespan() * sim.scheduler.instructions.size();
+        return cpu_time == 0 ? 0 : busy / cpu_time;
+    }
+
+    //time every CPU spent neither busy nor stalled, added up
+    private long idle_time() {
+        long idle = 0;
+        long makespan = makespan();
+        for (CPU cpu : sim.scheduler.instructions) {
+            idle += makespan - cpu.getBusyTime() - cpu.getStallTime();
+        }
+        return idle;
+    }
+
+    private double per_tick(long count) {
+        long makespan = makespan();
+        return makespan == 0 ? 0 : (double) count / makespan;
+    }
+
+    private double per_second(long count) {
+        return wall_time == 0 ? 0 : count * 1e9 / wall_time;
+    }
+
+    long wall_time() {
+        return wall_time;
+    }
+
+    //time the last CPU finished
+    private long makespan() {
+        long makespan = 0;
+        for (CPU cpu : sim.scheduler.instructions) {
+            makespan = Math.max(makespan, cpu.getCompletionTime());
         }
+        return makespan;
     }
 
-    static void print_metrics() throws IOException {
+    private static double round(double value) {
+        return (double) Math.round(value * 1000) / 1000;
+    }
+
+    void print_metrics() throws IOException {
         list_metrics();
         bufferedWriter.newLine();
+        list_cpu_metrics();
+        bufferedWriter.newLine();
+        list_latency_summary();
+        bufferedWriter.newLine();
+        list_throughput();
+        bufferedWriter.newLine();
         close();
     }
 
-    static void start_time(long time) {
-        globalStartTime = time;
+    //the run starts, from now on the wall clock
+    void start() {
+        waiting_times.clear();
+        turnaround_times.clear();
+        response_times.clear();
+        run_times.clear();
+        instructions = 0;
+        wall_start = System.nanoTime();
+    }
+
+    //the run is over
+    void stop() {
+        wall_time = System.nanoTime() - wall_start;
     }
 
-    static void close() throws IOException {
+    void close() throws IOException {
         bufferedWriter.close();
     }
 }
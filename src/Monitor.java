@@ -0,0 +1,275 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Live view of a running simulation over JMX, for JConsole or any other JMX client.
+// While run is going the simulation shows up under os:simulation=<POLICY>-<n> with a Simulation bean
+// (jobs, ready queues, instruction rate), a RAM bean (occupancy and fragmentation) and a bean per
+// CPU (state, current job, clock). Every attribute reads a counter the simulation keeps anyway or a
+// field of a CPU, never a scan over jobs or memory, so watching a run does not slow it down. CPU
+// fields are read without synchronizing with the CPU, a value may be a step behind.
+public class Monitor {
+
+    private static final AtomicInteger simulations = new AtomicInteger();
+
+    private final Simulation sim;
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    // Wall clock time the run started, and the instructions and time of the last rate sample
+    private volatile long started;
+    private long sampled_at;
+    private long sampled_instructions;
+
+    Monitor(Simulation sim) {
+        this.sim = sim;
+    }
+
+    // Register the beans once the CPUs exist, names are unique within the JVM
+    void register() {
+        started = System.nanoTime();
+        sampled_at = started;
+        sampled_instructions = 0;
+        String name = "os:simulation=" + sim.scheduler.policy + "-" + simulations.incrementAndGet();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName(name + ",type=Simulation"), new SimulationBean());
+            register(server, new ObjectName(name + ",type=RAM"), new RamBean());
+            for (CPU cpu : sim.scheduler.instructions) {
+                register(server, new ObjectName(name + ",type=CPU,id=" + cpu.getCpuId()), new CpuBean(cpu));
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        server.registerMBean(bean, name);
+        registered.add(name);
+    }
+
+    // Remove the beans once the run is over
+    void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        registered.clear();
+    }
+
+    private long instructions() {
+        long instructions = 0;
+        for (CPU cpu : sim.scheduler.instructions) {
+            instructions += cpu.getInstructions();
+        }
+        return instructions;
+    }
+
+    public interface SimulationMXBean {
+        String getPolicy();
+        int getCores();
+        int getJobsSubmitted();
+        int getJobsFinished();
+        int getJobsReady();
+        int[] getReadyQueueDepths();
+        int getJobsRunning();
+        long getInstructions();
+        long getInstructionsPerSecond();
+        long getSimulatedTime();
+        long getWallTimeMillis();
+    }
+
+    public interface RamMXBean {
+        boolean isPaging();
+        int getSize();
+        int getUsed();
+        int getFree();
+        double getUsedPercent();
+        // Contiguous mode: free extents and the largest, and the share of free RAM outside the
+        // largest extent, so 0 while all free RAM is in one piece
+        int getHoles();
+        int getLargestHole();
+        double getFragmentation();
+        // Paging mode
+        int getFrames();
+        int getFreeFrames();
+    }
+
+    public interface CpuMXBean {
+        int getId();
+        String getState();
+        // Id of the job on the CPU, -1 if there is none
+        int getCurrentJob();
+        long getClock();
+        long getBusyTime();
+        long getStallTime();
+        int getDispatches();
+        int getInterrupts();
+        long getInstructions();
+    }
+
+    private class SimulationBean implements SimulationMXBean {
+        public String getPolicy() {
+            return sim.scheduler.policy.toString();
+        }
+
+        public int getCores() {
+            return sim.cores;
+        }
+
+        public int getJobsSubmitted() {
+            return sim.scheduler.submitted_count();
+        }
+
+        public int getJobsFinished() {
+            return sim.scheduler.finished_count();
+        }
+
+        public int getJobsReady() {
+            int ready = 0;
+            for (int depth : sim.scheduler.queue_depths()) {
+                ready += depth;
+            }
+            return ready;
+        }
+
+        public int[] getReadyQueueDepths() {
+            return sim.scheduler.queue_depths();
+        }
+
+        public int getJobsRunning() {
+            int running = 0;
+            for (CPU cpu : sim.scheduler.instructions) {
+                if (cpu.getcurrent_job() != null) {
+                    running++;
+                }
+            }
+            return running;
+        }
+
+        public long getInstructions() {
+            return instructions();
+        }
+
+        // Since the last time it was read, or since the run started
+        public synchronized long getInstructionsPerSecond() {
+            long now = System.nanoTime();
+            long instructions = instructions();
+            long rate = now == sampled_at ? 0 : (instructions - sampled_instructions) * 1_000_000_000L / (now - sampled_at);
+            sampled_at = now;
+            sampled_instructions = instructions;
+            return rate;
+        }
+
+        // The latest CPU clock
+        public long getSimulatedTime() {
+            long time = 0;
+            for (CPU cpu : sim.scheduler.instructions) {
+                time = Math.max(time, cpu.getClock());
+            }
+            return time;
+        }
+
+        public long getWallTimeMillis() {
+            return (System.nanoTime() - started) / 1_000_000;
+        }
+    }
+
+    private class RamBean implements RamMXBean {
+        public boolean isPaging() {
+            return sim.paging;
+        }
+
+        public int getSize() {
+            return sim.ram_size;
+        }
+
+        public int getUsed() {
+            return sim.mmu.ram_usage();
+        }
+
+        public int getFree() {
+            return sim.ram_size - getUsed();
+        }
+
+        public double getUsedPercent() {
+            return sim.ram_size == 0 ? 0 : (double) Math.round((double) getUsed() / sim.ram_size * 1000) / 10;
+        }
+
+        public int getHoles() {
+            return sim.paging ? 0 : sim.mmu.allocator.holes();
+        }
+
+        public int getLargestHole() {
+            return sim.paging ? 0 : sim.mmu.allocator.largest_hole();
+        }
+
+        public double getFragmentation() {
+            if (sim.paging) {
+                return 0;
+            }
+            int free = sim.ram_size - sim.mmu.allocator.used();
+            return free == 0 ? 0 : (double) Math.round((1 - (double) sim.mmu.allocator.largest_hole() / free) * 1000) / 1000;
+        }
+
+        public int getFrames() {
+            return sim.paging ? sim.mmu.frames() : 0;
+        }
+
+        public int getFreeFrames() {
+            return sim.paging ? sim.mmu.free_frames() : 0;
+        }
+    }
+
+    private static class CpuBean implements CpuMXBean {
+        private final CPU cpu;
+
+        CpuBean(CPU cpu) {
+            this.cpu = cpu;
+        }
+
+        public int getId() {
+            return cpu.getCpuId();
+        }
+
+        public String getState() {
+            return String.valueOf(cpu.getcpu_state());
+        }
+
+        public int getCurrentJob() {
+            PCB job = cpu.getcurrent_job();
+            return job == null ? -1 : job.getJobId();
+        }
+
+        public long getClock() {
+            return cpu.getClock();
+        }
+
+        public long getBusyTime() {
+            return cpu.getBusyTime();
+        }
+
+        public long getStallTime() {
+            return cpu.getStallTime();
+        }
+
+        public int getDispatches() {
+            return cpu.getDispatches();
+        }
+
+        public int getInterrupts() {
+            return cpu.getInterrupts();
+        }
+
+        public long getInstructions() {
+            return cpu.getInstructions();
+        }
+    }
+}
@@ -1,4 +1,4 @@
-import java.util.ArrayList;
+import java.util.BitSet;
 
 // Process Control Block //
 
@@ -27,19 +27,59 @@ public class PCB implements Comparable<PCB> {
     // Disk Pointers
     private final int diskStart;
 
+    // Paging
+    private PageTable pageTable;
+
+    // Words of the job's image written back from the cache since it was loaded
+    private final BitSet dirtyWords = new BitSet();
+
+    // Basic blocks of the job's code, null before the first dispatch or once the job has
+    // stored into its own code (see Translation)
+    private Translation translation;
+    private boolean codeWritten;
+
+    // Opcode and per instruction counts, null unless the run is profiled (see Profile)
+    private Profile profile;
+
+    // Context saved when the job is preempted
+    private int savedPc;
+
+    // MLFQ level, 0 is the top
+    private int queueLevel;
+    private int boostEpoch;
+
+    // Position in enqueue order, breaks ties between jobs with equal keys in a ready queue
+    private long queueSequence;
+
     // Metric Values
     private long AddedTime;
-    private long startTime;
+    // Simulated time the job arrived, 0 unless the program file streamed in
+    private long arrivalTime;
+    // Simulated time of the first dispatch, -1 until then
+    private long startTime = -1;
     private long completionTime;
     private int ramUsage;
-    private int cacheUsage;
+    private int cacheHits;
+    private int cacheMisses;
+    private int cacheEvictions;
     private int numIoProcesses = 0;
+    private int pageFaults = 0;
+    private int contextSwitches = 0;
+    private long saveTime = 0;
+    private long restoreTime = 0;
+    private long ioWait = 0;
+    private long stallTime = 0;
 
     PCB(String jobId, String NumberofInstructions, String priority, int diskStart) {
-        this.jobId = Integer.parseInt(jobId, 16);
+        this(Integer.parseInt(jobId, 16), Integer.parseInt(NumberofInstructions, 16),
+                Integer.parseInt(priority, 16), diskStart);
+    }
+
+    PCB(int jobId, int NumberofInstructions, int priority, int diskStart) {
+        this.jobId = jobId;
         this.ProgramCounter = 0;
-        this.NumberofInstructions = Integer.parseInt(NumberofInstructions, 16);
-        this.priority = Integer.parseInt(priority, 16);
+        this.NumberofInstructions = NumberofInstructions;
+        this.priority = priority;
         this.diskStart = diskStart;
         this.state = JobState.NEW;
 
@@ -61,6 +101,12 @@ public class PCB implements Comparable<PCB> {
     long getAddedTime() {
         return AddedTime;
     }
+    void setArrivalTime(long time) {
+        this.arrivalTime = time;
+    }
+    long getArrivalTime() {
+        return arrivalTime;
+    }
     long getStartTime() {
         return startTime;
     }
@@ -70,14 +116,29 @@ public class PCB implements Comparable<PCB> {
     void setRamUsage(int usage) {
         this.ramUsage = usage;
     }
-    void setCacheUsage(int usage) {
-        this.cacheUsage = usage;
-    }
     int getRamUsage() {
         return ramUsage;
     }
-    int getCacheUsage() {
-        return cacheUsage;
+    int getCacheHits() {
+        return cacheHits;
+    }
+    int getCacheMisses() {
+        return cacheMisses;
+    }
+    int getCacheEvictions() {
+        return cacheEvictions;
+    }
+    void incrementCacheHits() {
+        cacheHits++;
+    }
+    void addCacheHits(int hits) {
+        cacheHits += hits;
+    }
+    void incrementCacheMisses() {
+        cacheMisses++;
+    }
+    void incrementCacheEvictions() {
+        cacheEvictions++;
     }
     int getNumIoProcesses () {
         return numIoProcesses;
@@ -85,6 +146,43 @@ public class PCB implements Comparable<PCB> {
     void incrementIoProcesses() {
         numIoProcesses++;
     }
+    int getPageFaults() {
+        return pageFaults;
+    }
+    void incrementPageFaults() {
+        pageFaults++;
+    }
+    int getContextSwitches() {
+        return contextSwitches;
+    }
+    long getSaveTime() {
+        return saveTime;
+    }
+    long getRestoreTime() {
+        return restoreTime;
+    }
+    long getIoWait() {
+        return ioWait;
+    }
+    void addIoWait(long ticks) {
+        ioWait += ticks;
+    }
+    // Time the job held a CPU stalled on synchronous I/O, a page fault or its cache going to memory
+    long getStallTime() {
+        return stallTime;
+    }
+    void addStallTime(long ticks) {
+        stallTime += ticks;
+    }
+    // The job was switched out, preempted or blocked, saving its context took ticks
+    void addContextSwitch(long ticks) {
+        contextSwitches++;
+        saveTime += ticks;
+    }
+    // The job was dispatched again after a switch, restoring its context took ticks
+    void addRestore(long ticks) {
+        restoreTime += ticks;
+    }
 
     // Getters & setters
     int getJobId() {
@@ -113,6 +211,9 @@ public class PCB implements Comparable<PCB> {
     void incrementProgramCounter() {
         ProgramCounter++;
     }
+    void addProgramCounter(int instructions) {
+        ProgramCounter += instructions;
+    }
 
     void setCurrrentCPU(CPU cpu) {
         this.CurrrentCPU = cpu;
@@ -140,6 +241,15 @@ public class PCB implements Comparable<PCB> {
     void setTempBufferSize(int tempBufferSize) {
         this.tempBufferSize = tempBufferSize;
     }
+    int getInputBufferSize() {
+        return inputBufferSize;
+    }
+    int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+    int getTempBufferSize() {
+        return tempBufferSize;
+    }
     int getTotalSize() {
         return NumberofInstructions + inputBufferSize + outputBufferSize + tempBufferSize;
     }
@@ -158,6 +268,74 @@ public class PCB implements Comparable<PCB> {
     void setRamEnd(int index) {
         this.RamEnd = index;
     }
+    BitSet getDirtyWords() {
+        return dirtyWords;
+    }
+    void markDirty(int from, int to) {
+        dirtyWords.set(from, to);
+    }
+    Translation getTranslation() {
+        return translation;
+    }
+    void setTranslation(Translation translation) {
+        this.translation = translation;
+    }
+    boolean isCodeWritten() {
+        return codeWritten;
+    }
+    Profile getProfile() {
+        return profile;
+    }
+    void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+    // A store to the given word, if it is one of the job's instructions its translation is stale
+    void wroteWord(int address) {
+        if (address < NumberofInstructions) {
+            codeWritten = true;
+            translation = null;
+        }
+    }
+    PageTable getPageTable() {
+        return pageTable;
+    }
+    void setPageTable(PageTable pageTable) {
+        this.pageTable = pageTable;
+    }
+
+    // Saved context
+    void saveContext(int pc, Register[] registers) {
+        this.savedPc = pc;
+        this.registers = registers;
+    }
+    int getSavedPc() {
+        return savedPc;
+    }
+
+    // Instructions left from where the job stopped, used by SRTF
+    int getRemainingInstructions() {
+        return Math.max(0, NumberofInstructions - savedPc);
+    }
+
+    // MLFQ
+    int getQueueLevel() {
+        return queueLevel;
+    }
+    void setQueueLevel(int level) {
+        this.queueLevel = level;
+    }
+    int getBoostEpoch() {
+        return boostEpoch;
+    }
+    void setBoostEpoch(int epoch) {
+        this.boostEpoch = epoch;
+    }
+    long getQueueSequence() {
+        return queueSequence;
+    }
+    void setQueueSequence(long sequence) {
+        this.queueSequence = sequence;
+    }
 
 
     @Override
@@ -184,21 +362,22 @@ public class PCB implements Comparable<PCB> {
 
     @Override
     public String toString() {
-        ArrayList<String> jobInfo = new ArrayList<>();
-        jobInfo.add("Job ID: " + jobId);
-        jobInfo.add("Job Priority: " + priority);
-        jobInfo.add("Number of instructions: " + NumberofInstructions);
-        jobInfo.add("Job State: " + state);
-        jobInfo.add("RAM: " + RamStart + "-" + RamEnd);
-        StringBuilder finalOutput = new StringBuilder();
+        StringBuilder finalOutput = new StringBuilder(128);
         finalOutput.append("| ");
-        for (String s : jobInfo) {
-            while (s.length() < 15) {
-                s = s + " ";
-            }
-            finalOutput.append(s).append(" | ");
-        }
-
+        field(finalOutput.append("Job ID: ").append(jobId));
+        field(finalOutput.append("Job Priority: ").append(priority));
+        field(finalOutput.append("Number of instructions: ").append(NumberofInstructions));
+        field(finalOutput.append("Job State: ").append(state));
+        field(finalOutput.append("RAM: ").append(RamStart).append('-').append(RamEnd));
         return finalOutput.toString();
     }
+
+    // Pad the field just appended to 15 characters and close it
+    private static void field(StringBuilder out) {
+        int start = out.lastIndexOf("| ") + 2;
+        while (out.length() - start < 15) {
+            out.append(' ');
+        }
+        out.append(" | ");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+import java.util.Arrays;
+
+// Per-job page table used when the MMU runs in paging mode.
+// Maps each page of the job's image to a RAM frame, or -1 if the page is not resident.
+class PageTable {
+
+    private final int[] frames;
+    private final boolean[] dirty;
+
+    PageTable(int totalSize, int pageSize) {
+        int pages = (totalSize + pageSize - 1) / pageSize;
+        frames = new int[pages];
+        dirty = new boolean[pages];
+        Arrays.fill(frames, -1);
+    }
+
+    int pages() {
+        return frames.length;
+    }
+    int frame(int page) {
+        return frames[page];
+    }
+    void map(int page, int frame) {
+        frames[page] = frame;
+        dirty[page] = false;
+    }
+    void unmap(int page) {
+        frames[page] = -1;
+        dirty[page] = false;
+    }
+    boolean isDirty(int page) {
+        return dirty[page];
+    }
+    void setDirty(int page) {
+        dirty[page] = true;
+    }
+}
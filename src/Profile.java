@@ -0,0 +1,42 @@
+// Execution counts of one CPU or one job: how often each opcode ran and how conditional branches
+// went, and for a job how often each of its instructions ran.
+// Nothing here is shared. A CPU counts into its own Profile and into its running job's, and no
+// other CPU touches a job while it is on this one, so counting takes no locks or atomics.
+// Profiler merges them once the run is over.
+class Profile {
+
+    // The opcode field is 6 bits
+    final long[] opcodes = new long[64];
+    long instructions;
+    long branches;
+    long taken;
+
+    // Per instruction of a job, null in a CPU's profile
+    final long[] executed;
+    final long[] branch_taken;
+
+    // A job's profile for its number of instructions, or a CPU's for 0
+    Profile(int instructions) {
+        this.executed = instructions > 0 ? new long[instructions] : null;
+        this.branch_taken = instructions > 0 ? new long[instructions] : null;
+    }
+
+    // The instruction at pc ran. taken says whether a branch went to its target rather than
+    // falling through, a branch to the next instruction counts as not taken.
+    void count(int opcode, int pc, boolean taken) {
+        opcodes[opcode]++;
+        instructions++;
+        if (executed != null) {
+            executed[pc]++;
+        }
+        if (opcode >= Instruction.BEQ && opcode <= Instruction.BLZ) {
+            branches++;
+            if (taken) {
+                this.taken++;
+                if (branch_taken != null) {
+                    branch_taken[pc]++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Report of a run's execution profiles (see Profile), written next to the metrics as
+// metrics/<POLICY>-profile.csv when Simulation.profile is set. It lists the opcodes executed in all
+// and on each CPU, each CPU's instructions, branches and instructions per second of wall clock time,
+// each job's opcode mix, the most executed instructions and the loops that ran the most instructions.
+class Profiler {
+
+    // Rows in the hot instruction and hot loop tables
+    int top = 20;
+
+    private final Simulation sim;
+
+    Profiler(Simulation sim) {
+        this.sim = sim;
+    }
+
+    void write(String filename) throws IOException {
+        try (Writer out = new BufferedWriter(new PrintWriter(new File("./metrics/" + filename)))) {
+            write(out);
+        }
+    }
+
+    void write(Writer out) throws IOException {
+        list_opcodes(out);
+        out.write("\n");
+        list_cpus(out);
+        out.write("\n");
+        list_jobs(out);
+        out.write("\n");
+        list_hot_instructions(out);
+        out.write("\n");
+        list_hot_loops(out);
+        out.write("\n");
+    }
+
+    //opcodes executed by every CPU together and by each one
+    private void list_opcodes(Writer out) throws IOException {
+        List<CPU> cpus = sim.scheduler.instructions;
+        long[] opcodes = new long[64];
+        long total = 0;
+        for (CPU cpu : cpus) {
+            for (int opcode = 0; opcode < opcodes.length; opcode++) {
+                opcodes[opcode] += cpu.getProfile().opcodes[opcode];
+            }
+            total += cpu.getProfile().instructions;
+        }
+        out.write("# Opcode Profile\n");
+        out.write("Opcode,Executed,% of Instructions");
+        for (CPU cpu : cpus) {
+            out.write(",CPU " + cpu.getCpuId());
+        }
+        out.write("\n");
+        for (int opcode = 0; opcode < opcodes.length; opcode++) {
+            // Words that are not instructions only show up if a job ran one
+            if (opcode >= Instruction.opcd.length && opcodes[opcode] == 0) {
+                continue;
+            }
+            out.write(name(opcode) + "," + opcodes[opcode] + "," + ratio(opcodes[opcode], total));
+            for (CPU cpu : cpus) {
+                out.write("," + cpu.getProfile().opcodes[opcode]);
+            }
+            out.write("\n");
+        }
+    }
+
+    //instructions, conditional branches and speed of each CPU, then of all of them
+    private void list_cpus(Writer out) throws IOException {
+        out.write("# CPU Profile\n");
+        out.write("CPU ID,Instructions,Branches,Taken %,Instructions/s\n");
+        Profile all = new Profile(0);
+        for (CPU cpu : sim.scheduler.instructions) {
+            Profile profile = cpu.getProfile();
+            write_counts(out, String.valueOf(cpu.getCpuId()), profile);
+            all.instructions += profile.instructions;
+            all.branches += profile.branches;
+            all.taken += profile.taken;
+        }
+        write_counts(out, "All", all);
+    }
+
+    private void write_counts(Writer out, String name, Profile profile) throws IOException {
+        long wall = sim.metrics.wall_time();
+        long per_second = wall == 0 ? 0 : Math.round(profile.instructions * 1e9 / wall);
+        out.write(name + "," + profile.instructions + "," + profile.branches + ","
+                + ratio(profile.taken, profile.branches) + "," + per_second + "\n");
+    }
+
+    //how many of each opcode every job ran
+    private void list_jobs(Writer out) throws IOException {
+        out.write("# Job Opcode Profile\n");
+        out.write("Job ID,Instructions,Branches,Taken %");
+        for (String opcode : Instruction.opcd) {
+            out.write("," + opcode);
+        }
+        out.write("\n");
+        for (PCB job : sim.scheduler.jobs) {
+            Profile profile = job.getProfile();
+            if (profile == null) {
+                continue;
+            }
+            out.write(job.getJobId() + "," + profile.instructions + "," + profile.branches + ","
+                    + ratio(profile.taken, profile.branches));
+            for (int opcode = 0; opcode < Instruction.opcd.length; opcode++) {
+                out.write("," + profile.opcodes[opcode]);
+            }
+            out.write("\n");
+        }
+    }
+
+    //the instructions that ran most often, over every job
+    private void list_hot_instructions(Writer out) throws IOException {
+        long total = 0;
+        Hottest hottest = new Hottest(top);
+        for (PCB job : sim.scheduler.jobs) {
+            Profile profile = job.getProfile();
+            if (profile == null) {
+                continue;
+            }
+            total += profile.instructions;
+            for (int pc = 0; pc < profile.executed.length; pc++) {
+                if (profile.executed[pc] > 0) {
+                    hottest.offer(new Hot(job, pc, pc, profile.executed[pc]));
+                }
+            }
+        }
+        out.write("# Hot Instructions\n");
+        out.write("Job ID,PC,Opcode,Executed,% of Instructions,Taken %\n");
+        for (Hot hot : hottest.in_order()) {
+            Profile profile = hot.job.getProfile();
+            int opcode = Instruction.opcode(code(hot.job, hot.pc));
+            String taken = opcode >= Instruction.BEQ && opcode <= Instruction.BLZ
+                    ? String.valueOf(ratio(profile.branch_taken[hot.pc], hot.count)) : "";
+            out.write(hot.job.getJobId() + "," + hot.pc + "," + name(opcode) + "," + hot.count + ","
+                    + ratio(hot.count, total) + "," + taken + "\n");
+        }
+    }
+
+    //loops, found as taken jumps and branches back to an earlier instruction, by the number of
+    //instructions run from their first instruction to the branch
+    private void list_hot_loops(Writer out) throws IOException {
+        Hottest hottest = new Hottest(top);
+        for (PCB job : sim.scheduler.jobs) {
+            Profile profile = job.getProfile();
+            if (profile == null) {
+                continue;
+            }
+            for (int pc = 0; pc < profile.executed.length; pc++) {
+                long insn = code(job, pc);
+                int opcode = Instruction.opcode(insn);
+                int target = Instruction.addressIndex(insn);
+                if (opcode != Instruction.JMP && (opcode < Instruction.BEQ || opcode > Instruction.BLZ)
+                        || target > pc) {
+                    continue;
+                }
+                long iterations = opcode == Instruction.JMP ? profile.executed[pc] : profile.branch_taken[pc];
+                if (iterations == 0) {
+                    continue;
+                }
+                long instructions = 0;
+                for (int body = target; body <= pc; body++) {
+                    instructions += profile.executed[body];
+                }
+                Hot loop = new Hot(job, target, pc, instructions);
+                loop.iterations = iterations;
+                hottest.offer(loop);
+            }
+        }
+        out.write("# Hot Loops\n");
+        out.write("Job ID,Start PC,Branch PC,Iterations,Instructions\n");
+        for (Hot loop : hottest.in_order()) {
+            out.write(loop.job.getJobId() + "," + loop.pc + "," + loop.end + "," + loop.iterations + ","
+                    + loop.count + "\n");
+        }
+    }
+
+    // The instruction at pc in a job's code on disk
+    private long code(PCB job, int pc) {
+        return Instruction.decode(sim.mmu.disk[job.getDiskStart() + pc]);
+    }
+
+    private static String name(int opcode) {
+        return opcode < Instruction.opcd.length ? Instruction.opcd[opcode] : "0x" + Integer.toHexString(opcode);
+    }
+
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0 : (double) Math.round((double) part / whole * 1000) / 1000;
+    }
+
+    // An instruction or a loop from pc to end and how many times it ran
+    private static class Hot {
+        final PCB job;
+        final int pc;
+        final int end;
+        final long count;
+        long iterations;
+
+        Hot(PCB job, int pc, int end, long count) {
+            this.job = job;
+            this.pc = pc;
+            this.end = end;
+            this.count = count;
+        }
+    }
+
+    // The top entries by count, ties going to the job loaded first and then the lower pc
+    private static class Hottest {
+        private static final Comparator<Hot> coldest = Comparator.<Hot>comparingLong(hot -> hot.count)
+                .thenComparing(hot -> hot.job.getDiskStart(), Comparator.reverseOrder())
+                .thenComparing(hot -> hot.pc, Comparator.reverseOrder());
+
+        private final int size;
+        private final PriorityQueue<Hot> heap = new PriorityQueue<>(coldest);
+
+        Hottest(int size) {
+            this.size = size;
+        }
+
+        void offer(Hot hot) {
+            if (heap.size() < size) {
+                heap.add(hot);
+            } else if (size > 0 && coldest.compare(hot, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(hot);
+            }
+        }
+
+        List<Hot> in_order() {
+            List<Hot> list = new ArrayList<>(heap);
+            list.sort(coldest.reversed());
+            return list;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Compiled binary form of a program file.
+ The text file is parsed once and saved next to it as an image that later runs map
+ straight into the disk array. All values are little endian ints:
+
+   header     magic, version, job count, word count
+   job table  per job: id, instructions, priority, input, output and temp buffer sizes, disk start
+   words      every disk word in order
+ */
+class ProgramImage {
+
+    private static final int MAGIC = 0x4D494F53; // "SOIM"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 4;
+    private static final int JOB_INTS = 7;
+
+    // True for a program file that is already an image, such as one written by WorkloadGenerator
+    static boolean is_image(File file) {
+        return file.getName().endsWith(".img");
+    }
+
+    // The image file that caches a program file
+    static File image_for(File text) {
+        return new File(text.getPath().replaceFirst("\\.txt$", "") + ".img");
+    }
+
+    // True when the image exists and is at least as new as the text it was compiled from
+    static boolean is_current(File text, File image) {
+        return image.isFile() && image.lastModified() >= text.lastModified();
+    }
+
+    // Save the jobs as an image, each with its words in the matching entry of words
+    static void write(File image, List<PCB> jobs, List<int[]> words) throws IOException {
+        try (Writer out = new Writer(image, jobs.size())) {
+            for (int i = 0; i < jobs.size(); i++) {
+                out.add(jobs.get(i), words.get(i), 0);
+            }
+        }
+    }
+
+    // Map an image, copy its words onto the MMU's disk and return its jobs in file order.
+    // A truncated or otherwise inconsistent image throws IOException before anything is copied.
+    static List<PCB> load(File image, MMU mmu) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(image, "r")) {
+            long size = file.getChannel().size();
+            if (size < HEADER_INTS * 4) {
+                throw new IOException(image + " is not a program image");
+            }
+            MappedByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            IntBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (in.get() != MAGIC || in.get() != VERSION) {
+                throw new IOException(image + " is not a program image");
+            }
+            int jobCount = in.get();
+            int words = in.get();
+            if (jobCount < 0 || words < 0 || size != (HEADER_INTS + (long) jobCount * JOB_INTS + words) * 4) {
+                throw new IOException(image + " holds " + size + " bytes, its header says "
+                        + jobCount + " jobs and " + words + " words");
+            }
+
+            List<PCB> jobs = new ArrayList<>(jobCount);
+            for (int i = 0; i < jobCount; i++) {
+                int jobId = in.get();
+                int instructions = in.get();
+                int priority = in.get();
+                int input = in.get();
+                int output = in.get();
+                int temp = in.get();
+                PCB pcb = new PCB(jobId, instructions, priority, in.get());
+                pcb.setInputBufferSize(input);
+                pcb.setOutputBufferSize(output);
+                pcb.setTempBufferSize(temp);
+                if (pcb.getDiskStart() < 0 || (long) pcb.getDiskStart() + pcb.getTotalSize() > words) {
+                    throw new IOException(image + ": job " + jobId + " lies outside its " + words + " words");
+                }
+                jobs.add(pcb);
+            }
+
+            mmu.ensure_disk(words);
+            in.get(mmu.disk, 0, words);
+            return jobs;
+        }
+    }
+
+    // Writes an image one job at a time, so images of more jobs than fit on disk can be made.
+    // Jobs are laid out back to back in the order they are added.
+    static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer table;
+        private final ByteBuffer words = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private final int jobs;
+        private int added;
+        private int word_count;
+
+        Writer(File image, int jobs) throws IOException {
+            this.jobs = jobs;
+            this.channel = FileChannel.open(image.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.table = ByteBuffer.allocate((HEADER_INTS + jobs * JOB_INTS) * 4).order(ByteOrder.LITTLE_ENDIAN);
+            table.position(HEADER_INTS * 4);
+            channel.position(table.capacity());
+        }
+
+        // Add a job whose words start at offset in source
+        void add(PCB job, int[] source, int offset) throws IOException {
+            if (added == jobs) {
+                throw new IllegalStateException("Image was opened for " + jobs + " jobs");
+            }
+            table.putInt(job.getJobId())
+                    .putInt(job.getNumberofInstructions())
+                    .putInt(job.getPriority())
+                    .putInt(job.getInputBufferSize())
+                    .putInt(job.getOutputBufferSize())
+                    .putInt(job.getTempBufferSize())
+                    .putInt(word_count);
+            int length = job.getTotalSize();
+            for (int i = 0; i < length; i++) {
+                if (!words.hasRemaining()) {
+                    flush_words();
+                }
+                words.putInt(source[offset + i]);
+            }
+            word_count += length;
+            added++;
+        }
+
+        // Write the header and job table once every job's words are out
+        @Override
+        public void close() throws IOException {
+            try {
+                flush_words();
+                if (added != jobs) {
+                    throw new IllegalStateException("Image has " + added + " of " + jobs + " jobs");
+                }
+                table.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, jobs).putInt(12, word_count);
+                table.rewind();
+                long position = 0;
+                while (table.hasRemaining()) {
+                    position += channel.write(table, position);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void flush_words() throws IOException {
+            words.flip();
+            while (words.hasRemaining()) {
+                channel.write(words);
+            }
+            words.clear();
+        }
+    }
+}
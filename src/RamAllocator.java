@@ -0,0 +1,98 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Free-extent allocator for contiguous RAM.
+// Holes are indexed both by start address (for coalescing on free) and by
+// size (for best-fit allocation), so allocate and free are O(log n) in the
+// number of holes instead of a scan over every RAM word.
+class RamAllocator {
+
+    private final int size;
+
+    // start -> length of every free extent
+    private final TreeMap<Integer, Integer> by_start = new TreeMap<>();
+    // (length << 32 | start) of every free extent, ordered by length then start
+    private final TreeSet<Long> by_size = new TreeSet<>();
+
+    private int used;
+
+    RamAllocator(int size) {
+        this.size = size;
+        reset();
+    }
+
+    // Free the whole address space as one hole.
+    synchronized void reset() {
+        by_start.clear();
+        by_size.clear();
+        used = 0;
+        add_hole(0, size);
+    }
+
+    // Reserve the smallest hole that fits. Returns the start address, or -1 when no hole is big enough.
+    synchronized int allocate(int length) {
+        if (length <= 0) {
+            return -1;
+        }
+        Long fit = by_size.ceiling(key(length, 0));
+        if (fit == null) {
+            return -1;
+        }
+        int start = (int) (long) fit;
+        int holeLength = (int) (fit >>> 32);
+        remove_hole(start, holeLength);
+        if (holeLength > length) {
+            add_hole(start + length, holeLength - length);
+        }
+        used += length;
+        return start;
+    }
+
+    // Return an extent to the free list, merging it with neighbouring holes.
+    synchronized void free(int start, int length) {
+        if (length <= 0) {
+            return;
+        }
+        int end = start + length;
+
+        Map.Entry<Integer, Integer> before = by_start.floorEntry(start);
+        if (before != null && before.getKey() + before.getValue() == start) {
+            remove_hole(before.getKey(), before.getValue());
+            start = before.getKey();
+        }
+        Integer afterLength = by_start.get(end);
+        if (afterLength != null) {
+            remove_hole(end, afterLength);
+            end += afterLength;
+        }
+        add_hole(start, end - start);
+        used -= length;
+    }
+
+    synchronized int used() {
+        return used;
+    }
+
+    synchronized int holes() {
+        return by_start.size();
+    }
+
+    synchronized int largest_hole() {
+        return by_size.isEmpty() ? 0 : (int) (by_size.last() >>> 32);
+    }
+
+    private void add_hole(int start, int length) {
+        by_start.put(start, length);
+        by_size.add(key(length, start));
+    }
+
+    private void remove_hole(int start, int length) {
+        by_start.remove(start);
+        by_size.remove(key(length, start));
+    }
+
+    private static long key(int length, int start) {
+        return ((long) length << 32) | start;
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A queue of ready jobs ordered by the scheduling policy. No operation takes a lock.
+// FIFO style policies use lock-free linked queues (MLFQ keeps one per level), policies
+// that order jobs by a key use a lock-free skip list with the enqueue order as tie break.
+class ReadyQueue {
+
+    // Enqueue order, makes every key in the skip list unique
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ConcurrentLinkedQueue<PCB>[] levels;
+    private final ConcurrentSkipListSet<PCB> ordered;
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Other policies than MLFQ ignore mlfq_levels
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ReadyQueue(Scheduler.scheduler policy, int mlfq_levels) {
+        Comparator<PCB> order = order(policy);
+        if (order != null) {
+            levels = null;
+            ordered = new ConcurrentSkipListSet<>(order.thenComparingLong(PCB::getQueueSequence));
+        } else {
+            levels = new ConcurrentLinkedQueue[policy == Scheduler.scheduler.MLFQ ? mlfq_levels : 1];
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = new ConcurrentLinkedQueue<>();
+            }
+            ordered = null;
+        }
+    }
+
+    private static Comparator<PCB> order(Scheduler.scheduler policy) {
+        switch (policy) {
+            case PRIORITY:
+                return Comparator.naturalOrder();
+            case SJF:
+                return Comparator.comparingInt(PCB::getNumberofInstructions);
+            case SRTF:
+                return Comparator.comparingInt(PCB::getRemainingInstructions);
+            default:
+                return null;
+        }
+    }
+
+    void add(PCB job) {
+        job.setQueueSequence(sequence.incrementAndGet());
+        if (ordered != null) {
+            ordered.add(job);
+        } else {
+            levels[Math.min(job.getQueueLevel(), levels.length - 1)].add(job);
+        }
+        size.incrementAndGet();
+    }
+
+    // Remove and return the next job, or null if the queue is empty
+    PCB poll() {
+        PCB next = null;
+        if (ordered != null) {
+            next = ordered.pollFirst();
+        } else {
+            for (int i = 0; next == null && i < levels.length; i++) {
+                next = levels[i].poll();
+            }
+        }
+        if (next != null) {
+            size.decrementAndGet();
+        }
+        return next;
+    }
+
+    // Look at the job that would be taken next without removing it
+    PCB peek() {
+        if (ordered != null) {
+            Iterator<PCB> first = ordered.iterator();
+            return first.hasNext() ? first.next() : null;
+        }
+        for (ConcurrentLinkedQueue<PCB> level : levels) {
+            PCB next = level.peek();
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    // Move every waiting job back to the top level
+    void boost() {
+        if (levels == null) {
+            return;
+        }
+        for (int i = 1; i < levels.length; i++) {
+            PCB job;
+            while ((job = levels[i].poll()) != null) {
+                job.setQueueLevel(0);
+                levels[0].add(job);
+            }
+        }
+    }
+
+    // Approximate while other threads are adding or polling
+    int size() {
+        return size.get();
+    }
+}
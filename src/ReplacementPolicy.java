@@ -0,0 +1,124 @@
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+// Page replacement policy used by the MMU to pick a victim frame on a page fault.
+// Implementations are only called while the MMU holds its paging lock.
+interface ReplacementPolicy {
+
+    // A page was just loaded into the frame
+    void loaded(int frame);
+
+    // The frame was read or written
+    void accessed(int frame);
+
+    // The frame was released and is no longer a candidate
+    void freed(int frame);
+
+    // Choose an in-use frame to evict
+    int victim();
+
+    static ReplacementPolicy create(policy kind, int frames) {
+        switch (kind) {
+            case LRU:
+                return new Lru(frames);
+            case CLOCK:
+                return new Clock(frames);
+            default:
+                return new Fifo();
+        }
+    }
+
+    enum policy {
+        FIFO,
+        LRU,
+        CLOCK
+    }
+
+    // Evicts frames in the order they were loaded
+    class Fifo implements ReplacementPolicy {
+        private final LinkedHashSet<Integer> order = new LinkedHashSet<>();
+
+        public void loaded(int frame) {
+            order.add(frame);
+        }
+        public void accessed(int frame) {
+        }
+        public void freed(int frame) {
+            order.remove(frame);
+        }
+        public int victim() {
+            Iterator<Integer> oldest = order.iterator();
+            int frame = oldest.next();
+            oldest.remove();
+            return frame;
+        }
+    }
+
+    // Evicts the frame with the oldest access stamp
+    class Lru implements ReplacementPolicy {
+        private final long[] last_used;
+        private long clock;
+
+        Lru(int frames) {
+            last_used = new long[frames];
+        }
+
+        public void loaded(int frame) {
+            last_used[frame] = ++clock;
+        }
+        public void accessed(int frame) {
+            last_used[frame] = ++clock;
+        }
+        public void freed(int frame) {
+            last_used[frame] = 0;
+        }
+        public int victim() {
+            int victim = -1;
+            for (int i = 0; i < last_used.length; i++) {
+                if (last_used[i] != 0 && (victim < 0 || last_used[i] < last_used[victim])) {
+                    victim = i;
+                }
+            }
+            last_used[victim] = 0;
+            return victim;
+        }
+    }
+
+    // Second chance: sweeps a hand over the frames, clearing reference bits until it finds an unreferenced one
+    class Clock implements ReplacementPolicy {
+        private final boolean[] in_use;
+        private final boolean[] referenced;
+        private int hand;
+
+        Clock(int frames) {
+            in_use = new boolean[frames];
+            referenced = new boolean[frames];
+        }
+
+        public void loaded(int frame) {
+            in_use[frame] = true;
+            referenced[frame] = true;
+        }
+        public void accessed(int frame) {
+            referenced[frame] = true;
+        }
+        public void freed(int frame) {
+            in_use[frame] = false;
+            referenced[frame] = false;
+        }
+        public int victim() {
+            while (true) {
+                int frame = hand;
+                hand = (hand + 1) % in_use.length;
+                if (in_use[frame]) {
+                    if (referenced[frame]) {
+                        referenced[frame] = false;
+                    } else {
+                        in_use[frame] = false;
+                        return frame;
+                    }
+                }
+            }
+        }
+    }
+}
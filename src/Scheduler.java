@@ -1,63 +1,260 @@
-//FIFO and priority policies
+//FIFO, priority, round robin, shortest job first and multilevel feedback queue policies
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class Scheduler {
 
-    public static scheduler policy;
+    private final Simulation sim;
+
+    public final scheduler policy;
+
+    // Give every CPU its own run queue and let idle CPUs steal from their peers.
+    // Otherwise all CPUs share a single queue.
+    public boolean work_stealing = false;
+
+    // Number of instructions a job may run before ROUND_ROBIN preempts it.
+    // MLFQ doubles it at every level below the top.
+    public int quantum = 8;
+
+    // MLFQ: number of levels, and how many dispatches between boosts of every job back to the top level
+    public int mlfq_levels = 3;
+    public int boost_interval = 64;
     
     // Load 30 jobs into an array
-    public static final ArrayList<PCB> jobs = new ArrayList<>();
+    public final ArrayList<PCB> jobs = new ArrayList<>();
     
      //Load instruction set into an array
-    public static ArrayList<CPU> instructions = new ArrayList<>();
+    public final ArrayList<CPU> instructions = new ArrayList<>();
+
+    private ReadyQueue[] queues = new ReadyQueue[0];
+    private final AtomicInteger next_queue = new AtomicInteger();
+
+    // Bumped whenever a job enters a ready queue, so SRTF only looks for a shorter job after an arrival
+    private final AtomicInteger arrivals = new AtomicInteger();
+    private final AtomicInteger dispatches = new AtomicInteger();
+    private final AtomicInteger boosts = new AtomicInteger();
+
+    // Jobs loaded so far and jobs run to completion, the run is over when they match
+    // and the loader has reached the end of its input
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private volatile boolean input_done;
 
-    private static final PriorityQueue<PCB> priority_queue = new PriorityQueue<>();
-    private static final LinkedList<PCB> fifo_queue = new LinkedList<>();
+    Scheduler(Simulation sim, scheduler policy) {
+        this.sim = sim;
+        this.policy = policy;
+    }
+
+    //Set up the ready queues for a run on the given number of CPUs
+    void init(int cores) {
+        queues = new ReadyQueue[work_stealing ? cores : 1];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ReadyQueue(policy, mlfq_levels);
+        }
+        next_queue.set(0);
+        arrivals.set(0);
+        dispatches.set(0);
+        boosts.set(0);
+        submitted.set(0);
+        finished.set(0);
+        input_done = false;
+    }
 
-    //Add job
-    static void addJob(PCB job) {
-        job.setAddedTime(System.currentTimeMillis());
+    //A job was loaded onto disk and handed to the long-term scheduler
+    void submitted(PCB job) {
         jobs.add(job);
-        if (policy == scheduler.PRIORITY) {
-            priority_queue.add(job);
-        } else {
-            fifo_queue.add(job);
+        submitted.incrementAndGet();
+    }
+
+    //A job ran to completion
+    void finished(PCB job) {
+        finished.incrementAndGet();
+        signal_if_done();
+    }
+
+    //The loader has submitted every job it is going to
+    void end_of_input() {
+        input_done = true;
+        signal_if_done();
+    }
+
+    // Returns true once every loaded job has run to completion.
+    // Jobs may still be waiting for RAM or running on another CPU while the ready queues are empty.
+    boolean done() {
+        return input_done && finished.get() == submitted.get();
+    }
+
+    //Wake the idle CPUs so they see the run is over
+    private void signal_if_done() {
+        if (done()) {
+            sim.clock.wake();
+        }
+    }
+
+    //Jobs loaded and jobs run to completion so far
+    int submitted_count() {
+        return submitted.get();
+    }
+    int finished_count() {
+        return finished.get();
+    }
+
+    //Jobs in each ready queue, approximate while CPUs run
+    int[] queue_depths() {
+        ReadyQueue[] current = queues;
+        int[] depths = new int[current.length];
+        for (int i = 0; i < current.length; i++) {
+            depths[i] = current[i].size();
+        }
+        return depths;
+    }
+
+    //True if any ready queue holds a job
+    boolean has_ready() {
+        for (ReadyQueue queue : queues) {
+            if (queue.size() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Add a job admitted at the given simulated time, spreading jobs over the run queues round robin
+    void addJob(PCB job, long time) {
+        job.setAddedTime(time);
+        enqueue(job, time);
+    }
+
+    //Put a job preempted at the given simulated time back in the ready queue.
+    //Under MLFQ the job used its whole quantum, so it drops a level unless a boost happened while it ran.
+    void requeue(PCB job, long time) {
+        job.setJobState(PCB.JobState.READY);
+        if (policy == scheduler.MLFQ) {
+            if (job.getBoostEpoch() != boosts.get()) {
+                job.setQueueLevel(0);
+            } else {
+                job.setQueueLevel(Math.min(job.getQueueLevel() + 1, mlfq_levels - 1));
+            }
+        }
+        enqueue(job, time);
+    }
+
+    //A blocked job's I/O completed at the given simulated time, it rejoins its queue at the same level
+    void unblock(PCB job, long time) {
+        enqueue(job, time);
+    }
+
+    private void enqueue(PCB job, long time) {
+        queues[Math.floorMod(next_queue.getAndIncrement(), queues.length)].add(job);
+        arrivals.incrementAndGet();
+        sim.clock.ready(time);
+    }
+
+    //Number of instructions the job may run before it is preempted
+    int time_slice(PCB job) {
+        switch (policy) {
+            case ROUND_ROBIN:
+                return quantum;
+            case MLFQ:
+                return quantum << job.getQueueLevel();
+            default:
+                return Integer.MAX_VALUE;
         }
     }
 
+    //SRTF: preempt the running job if a job with less work left has arrived since the CPU last looked
+    boolean shorter_job_waiting(CPU cpu, int remaining) {
+        if (policy != scheduler.SRTF) {
+            return false;
+        }
+        int seen = arrivals.get();
+        if (seen == cpu.getArrivalsSeen()) {
+            return false;
+        }
+        cpu.setArrivalsSeen(seen);
+        for (ReadyQueue queue : queues) {
+            PCB waiting = queue.peek();
+            if (waiting != null && waiting.getRemainingInstructions() < remaining) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     //Add a CPU to the list of CPUs.
     //Right now we only have one CPU, but part 2 we will need 4.
-    static void add_CPU(CPU cpu) {
+    void add_CPU(CPU cpu) {
         instructions.add(cpu);
     }
 
-    // Determine if there is a remaining job in the queue.
-    static synchronized PCB next() {
-        PCB next;
-        if (policy == scheduler.PRIORITY) {
-            next = priority_queue.poll();
-        } else {
-            next = fifo_queue.poll();
+    // Take the next job for a CPU from its own queue, or steal one from the busiest peer.
+    // SRTF takes the job with the least work left in any queue instead, the one shorter_job_waiting
+    // compares against, otherwise a CPU would take its local job and preempt it straight away.
+    // The CPU must hold its turn (see Clock), it idles while this returns null and the run is not done.
+    PCB next(CPU cpu) {
+        ReadyQueue local = queues[cpu.getCpuId() % queues.length];
+        PCB next = policy == scheduler.SRTF && queues.length > 1 ? shortest(local).poll() : local.poll();
+        if (next == null && queues.length > 1) {
+            next = steal(local);
+        }
+        for (int i = 0; next == null && i < queues.length; i++) {
+            next = queues[i].poll();
         }
 
         if (next != null) {
             next.setJobState(PCB.JobState.RUNNING);
+            if (policy == scheduler.MLFQ) {
+                next.setBoostEpoch(boosts.get());
+                if (dispatches.incrementAndGet() % boost_interval == 0) {
+                    boost();
+                }
+            }
         }
         return next;
     }
-    static synchronized boolean has_next() {
-        PCB next;
-        if (policy == scheduler.PRIORITY) {
-            next = priority_queue.peek();
-        } else {
-            next = fifo_queue.peek();
+
+    //MLFQ: move every waiting job back to the top level so long jobs are not starved
+    private void boost() {
+        boosts.incrementAndGet();
+        for (ReadyQueue queue : queues) {
+            queue.boost();
+        }
+    }
+
+    //SRTF: the queue whose next job has the least work left, the CPU's own queue on a tie
+    private ReadyQueue shortest(ReadyQueue local) {
+        ReadyQueue shortest = local;
+        PCB head = local.peek();
+        for (ReadyQueue queue : queues) {
+            PCB waiting = queue.peek();
+            if (waiting != null && (head == null || waiting.getRemainingInstructions() < head.getRemainingInstructions())) {
+                shortest = queue;
+                head = waiting;
+            }
+        }
+        return shortest;
+    }
+
+    private PCB steal(ReadyQueue thief) {
+        ReadyQueue victim = null;
+        for (ReadyQueue queue : queues) {
+            if (queue != thief && (victim == null || queue.size() > victim.size())) {
+                victim = queue;
+            }
+        }
+        if (victim == null || victim.size() == 0) {
+            return null;
         }
-        return next == null;
+        return victim.poll();
     }
     
     public enum scheduler {
         FIFO,
-        PRIORITY
+        PRIORITY,
+        ROUND_ROBIN,
+        SJF,
+        SRTF,
+        MLFQ
     }
 }
@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// One run of the simulator. It owns its disk and RAM (mmu), ready queues (scheduler), CPUs,
+// simulated clock and metrics, and shares nothing with any other simulation, so any number of
+// them can run side by side (see Sweep).
+// Set the fields below and the settings of its parts, such as scheduler.quantum,
+// loader.program_file or io.latency, then call exec or run.
+public class Simulation {
+    int disk_size = 2048;
+    int ram_size = 1024;
+    int cache_size = 128;
+    int cache_line_size = 4;
+    int cache_ways = 4;
+    Cache.eviction cache_eviction = Cache.eviction.LRU;
+    Cache.write_policy cache_write_policy = Cache.write_policy.WRITE_BACK;
+
+    // Paging mode: jobs are paged in on demand instead of loaded contiguously
+    boolean paging = false;
+    int page_size = 16;
+    ReplacementPolicy.policy replacement = ReplacementPolicy.policy.FIFO;
+
+    // How the simulated CPUs run: a platform thread each, a virtual thread each, or all of them as
+    // tasks on one carrier thread (see Clock.carry). The last two are for machines with hundreds or
+    // thousands of cores. Virtual threads need Java 21, older JVMs use the carrier instead.
+    threads cpu_threads = threads.PLATFORM;
+
+    // Run straight-line code through Translation instead of interpreting every instruction
+    boolean translate = true;
+
+    // Count opcodes, instructions and branches as jobs run, exec writes them to
+    // metrics/<POLICY>-profile.csv (see Profiler)
+    boolean profile = false;
+
+    // Show the run live over JMX while it runs (see Monitor)
+    boolean jmx = true;
+
+    final int cores;
+    final Scheduler scheduler;
+    final LongTermScheduler long_term = new LongTermScheduler(this);
+    final Dispatcher dispatcher = new Dispatcher(this);
+    final Clock clock = new Clock(this);
+    final MMU mmu = new MMU(this);
+    final IOChannel io = new IOChannel(this);
+    final Loader loader = new Loader(this);
+    final Metrics metrics = new Metrics(this);
+    final Profiler profiler = new Profiler(this);
+    final EventLog events = new EventLog();
+    final Monitor monitor = new Monitor(this);
+    final Translation.Library translations = new Translation.Library();
+
+    Simulation(int cores, Scheduler.scheduler policy) {
+        this.cores = cores;
+        this.scheduler = new Scheduler(this, policy);
+    }
+
+    // Run every job and write metrics/<POLICY>.csv and metrics/<POLICY>.json, and log what the
+    // dispatcher does to metrics/<POLICY>-events.csv unless events.log_level is OFF
+    void exec() throws IOException, InterruptedException {
+        // Initialize MetricCollector to a new file
+        metrics.init(scheduler.policy.toString() + ".csv");
+        if (events.log_level != EventLog.level.OFF) {
+            events.init(scheduler.policy.toString() + "-events.csv");
+        }
+        run();
+        metrics.write_json(scheduler.policy.toString() + ".json");
+        if (profile) {
+            profiler.write(scheduler.policy.toString() + "-profile.csv");
+        }
+    }
+
+    // Start over with empty queues and memory and load the program. Streaming runs load it in run.
+    void reset() {
+        scheduler.instructions.clear();
+        scheduler.jobs.clear();
+        scheduler.init(cores);
+        clock.init(cores);
+        translations.clear();
+        long_term.init();
+        mmu.init();
+        if (!loader.streaming) {
+            loader.loadFile();
+            long_term.admit(0);
+            scheduler.end_of_input();
+        }
+    }
+
+    // Run every job to completion and write the metrics to wherever metrics was initialized
+    void run() throws IOException, InterruptedException {
+        // Reset simulation
+        reset();
+
+        // Create CPUs without starting them
+        for (int i = 0; i < cores; i++) {
+            CPU cpu = new CPU(this, i);
+            scheduler.add_CPU(cpu);
+        }
+
+        if (jmx) {
+            monitor.register();
+        }
+        try {
+            execute();
+        } finally {
+            monitor.unregister();
+        }
+        metrics.print_metrics();
+    }
+
+    // Run the CPUs until every job is done, however long that takes.
+    // Throws if a CPU or the loader failed, rather than report a run that did not finish.
+    private void execute() throws IOException, InterruptedException {
+        // Simulated time starts at 0, see Clock
+        metrics.start();
+        events.start();
+        try {
+            if (cpu_threads == threads.CARRIER && !loader.streaming) {
+                // Everything runs on the calling thread
+                clock.carry(scheduler.instructions);
+            } else {
+                // Use ExecutorService to start threads all at once
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                ExecutorService virtual = cpu_threads == threads.VIRTUAL ? virtual_threads() : null;
+                ExecutorService executorService = virtual != null ? virtual : Executors.newCachedThreadPool();
+                if (cpu_threads == threads.PLATFORM || virtual != null) {
+                    for (CPU cpu : scheduler.instructions) {
+                        executorService.execute(guarded(cpu, failure));
+                    }
+                } else {
+                    executorService.execute(guarded(() -> clock.carry(scheduler.instructions), failure));
+                }
+                if (loader.streaming) {
+                    executorService.execute(guarded(loader::streamFile, failure));
+                }
+
+                // Wait for all threads to complete. The other CPUs would wait forever for one that
+                // died, so stop them all once anything fails.
+                executorService.shutdown();
+                while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+                    if (failure.get() != null) {
+                        executorService.shutdownNow();
+                    }
+                }
+                if (failure.get() != null) {
+                    throw new IllegalStateException("Simulation of " + scheduler.policy + " failed", failure.get());
+                }
+            }
+        } finally {
+            metrics.stop();
+            events.stop();
+        }
+    }
+
+    // A task that records why it failed
+    private static Runnable guarded(Runnable task, AtomicReference<Throwable> failure) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            }
+        };
+    }
+
+    // Executor that starts a virtual thread for every task, or null if this JVM has none
+    static ExecutorService virtual_threads() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public enum threads {
+        PLATFORM,
+        VIRTUAL,
+        CARRIER
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ Runs a grid of configurations side by side and writes one line of results for each to a CSV file.
+ Every combination of the values given is its own Simulation. A simulation runs all of its CPUs on
+ the fork-join worker that picks it up (see Simulation.threads.CARRIER), so parallelism is how many
+ configurations run at once. Lines are written in grid order whatever order the runs finish in.
+
+ Usage: java Sweep [key=value,value,... ...]
+   cores, policy, ram, cache, quantum     values to sweep, every policy and otherwise the Simulation defaults
+   program=<file>, out=<file>, parallelism=<threads>
+ */
+class Sweep {
+
+    static String program_file = "src/Program-File-Wordversion-30-JOBS.txt";
+    static File out = new File("metrics/sweep.csv");
+    static int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public static void main(String[] args) throws IOException {
+        List<Integer> cores = List.of(1);
+        List<Scheduler.scheduler> policies = List.of(Scheduler.scheduler.values());
+        List<Integer> ram_sizes = List.of(1024);
+        List<Integer> cache_sizes = List.of(128);
+        List<Integer> quanta = List.of(8);
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            String value = pair.length > 1 ? pair[1] : "";
+            switch (pair[0]) {
+                case "cores": cores = integers(value); break;
+                case "policy": {
+                    policies = new ArrayList<>();
+                    for (String policy : value.split(",")) {
+                        policies.add(Scheduler.scheduler.valueOf(policy.toUpperCase()));
+                    }
+                    break;
+                }
+                case "ram": ram_sizes = integers(value); break;
+                case "cache": cache_sizes = integers(value); break;
+                case "quantum": quanta = integers(value); break;
+                case "program": program_file = value; break;
+                case "out": out = new File(value); break;
+                case "parallelism": parallelism = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown setting " + arg);
+            }
+        }
+        List<Config> grid = new ArrayList<>();
+        for (int core_count : cores) {
+            for (Scheduler.scheduler policy : policies) {
+                for (int ram_size : ram_sizes) {
+                    for (int cache_size : cache_sizes) {
+                        for (int quantum : quanta) {
+                            grid.add(new Config(core_count, policy, ram_size, cache_size, quantum));
+                        }
+                    }
+                }
+            }
+        }
+        run(grid);
+    }
+
+    // Run every configuration on a pool of parallelism threads and write the results to out
+    static void run(List<Config> grid) throws IOException {
+        // Every simulation loads the same program, write its image once before they all look for it
+        Simulation first = new Simulation(1, Scheduler.scheduler.FIFO);
+        first.loader.program_file = program_file;
+        first.loader.compile();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<String>> results = new ArrayList<>();
+            for (Config config : grid) {
+                results.add(pool.submit(() -> run(config)));
+            }
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(out))) {
+                writer.write(Config.header() + "," + Metrics.summary_header() + "\n");
+                for (int i = 0; i < grid.size(); i++) {
+                    writer.write(grid.get(i) + "," + results.get(i).join() + "\n");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Run one configuration to completion and return its summary, or FAILED in every column if it failed
+    private static String run(Config config) {
+        Simulation sim = config.simulation();
+        sim.loader.program_file = program_file;
+        sim.cpu_threads = Simulation.threads.CARRIER;
+        // Thousands of short runs, too many and too brief to watch one by one
+        sim.jmx = false;
+        sim.metrics.init(Writer.nullWriter());
+        try {
+            sim.run();
+            return sim.metrics.summary();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return String.join(",", Collections.nCopies(Metrics.summary_header().split(",").length, "FAILED"));
+        }
+    }
+
+    private static List<Integer> integers(String values) {
+        List<Integer> list = new ArrayList<>();
+        for (String value : values.split(",")) {
+            list.add(Integer.parseInt(value));
+        }
+        return list;
+    }
+
+    // One point of the grid
+    static class Config {
+        final int cores;
+        final Scheduler.scheduler policy;
+        final int ram_size;
+        final int cache_size;
+        final int quantum;
+
+        Config(int cores, Scheduler.scheduler policy, int ram_size, int cache_size, int quantum) {
+            this.cores = cores;
+            this.policy = policy;
+            this.ram_size = ram_size;
+            this.cache_size = cache_size;
+            this.quantum = quantum;
+        }
+
+        Simulation simulation() {
+            Simulation sim = new Simulation(cores, policy);
+            sim.ram_size = ram_size;
+            sim.cache_size = cache_size;
+            sim.scheduler.quantum = quantum;
+            return sim;
+        }
+
+        static String header() {
+            return "Cores,Policy,RAM,Cache,Quantum";
+        }
+
+        @Override
+        public String toString() {
+            return cores + "," + policy + "," + ram_size + "," + cache_size + "," + quantum;
+        }
+    }
+}
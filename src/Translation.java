@@ -0,0 +1,278 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Basic-block translation of job programs.
+// A block runs from where control can arrive to the first branch, jump, NOP or HLT. RD, WR and ST
+// stay with the interpreter, a block ends before them. Every instruction in a block becomes an
+// operation with its registers and immediates already bound, so running a block fetches and decodes
+// nothing, and the CPU charges its time, slice and instruction fetches once for the whole block
+// (see CPU.run_job). Blocks are translated the first time they run and shared by every job with the
+// same code in a simulation (see Library). A job that stores into its own code goes back to the
+// interpreter.
+class Translation {
+
+    private static final Block NONE = new Block(0, 0, new Op[0], new int[0], new int[0]);
+
+    private final int[] words;
+    private final int line_size;
+    // Block starting at each instruction, NONE where the interpreter has to run it
+    private final Block[] blocks;
+
+    private Translation(int[] words, int line_size) {
+        this.words = words;
+        this.line_size = line_size;
+        this.blocks = new Block[words.length];
+    }
+
+    // The block starting at pc, or null if the instruction there is left to the interpreter
+    Block block(int pc) {
+        Block block = blocks[pc];
+        if (block == null) {
+            block = translate(pc);
+            blocks[pc] = block;
+        }
+        return block == NONE ? null : block;
+    }
+
+    private Block translate(int start) {
+        int end = start;
+        while (end < words.length) {
+            int opcode = Instruction.opcode(Instruction.decode(words[end]));
+            if (opcode == Instruction.RD || opcode == Instruction.WR || opcode == Instruction.ST) {
+                break;
+            }
+            end++;
+            if (ends_block(opcode)) {
+                break;
+            }
+        }
+        if (end == start) {
+            return NONE;
+        }
+        Op[] ops = new Op[end - start];
+        int[] opcodes = new int[end - start];
+        // Fetches in a row from one cache line, counted where the run starts. A load's data access
+        // comes between its fetch and the next one, so a run also ends after every LW.
+        int[] fetches = new int[end - start];
+        int run = 0;
+        for (int i = start; i < end; i++) {
+            long insn = Instruction.decode(words[i]);
+            ops[i - start] = op(insn);
+            opcodes[i - start] = Instruction.opcode(insn);
+            if (i > start && (i / line_size != (i - 1) / line_size
+                    || Instruction.opcode(Instruction.decode(words[i - 1])) == Instruction.LW)) {
+                run = i - start;
+            }
+            fetches[run]++;
+        }
+        return new Block(start, end, ops, opcodes, fetches);
+    }
+
+    private static boolean ends_block(int opcode) {
+        switch (opcode) {
+            case Instruction.HLT:
+            case Instruction.NOP:
+            case Instruction.JMP:
+            case Instruction.BEQ:
+            case Instruction.BNE:
+            case Instruction.BEZ:
+            case Instruction.BNZ:
+            case Instruction.BGZ:
+            case Instruction.BLZ:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // The operation for one instruction, doing what CPU.evaluate does for it
+    private static Op op(long insn) {
+        int reg1 = Instruction.reg1(insn);
+        int reg2 = Instruction.reg2(insn);
+        int reg3 = Instruction.reg3(insn);
+        int address = Instruction.address(insn);
+        int addressIndex = Instruction.addressIndex(insn);
+        switch (Instruction.opcode(insn)) {
+            case Instruction.LW:
+                if (addressIndex == 0) {
+                    return (cpu, r) -> r[reg2].data = cpu.getCache().read(r[reg1].data);
+                }
+                return (cpu, r) -> r[reg2].data = cpu.getCache().read(addressIndex);
+            case Instruction.MOV:
+                return (cpu, r) -> r[reg3].data = r[reg1].data;
+            case Instruction.ADD:
+                return (cpu, r) -> r[reg3].data = r[reg1].data + r[reg2].data;
+            case Instruction.SUB:
+                return (cpu, r) -> r[reg3].data = r[reg1].data - r[reg2].data;
+            case Instruction.MUL:
+                return (cpu, r) -> r[reg3].data = r[reg1].data * r[reg2].data;
+            case Instruction.DIV:
+                return (cpu, r) -> {
+                    if (r[reg2].data != 0) {
+                        r[reg3].data = r[reg1].data / r[reg2].data;
+                    }
+                };
+            case Instruction.AND:
+                return (cpu, r) -> r[reg3].data = r[reg1].data != 0 && r[reg2].data != 0 ? 1 : 0;
+            case Instruction.OR:
+                return (cpu, r) -> {
+                    if (r[reg1].data == 1 || r[reg2].data == 1) {
+                        r[reg3].data = 1;
+                    } else {
+                        r[reg2].data = 0;
+                    }
+                };
+            case Instruction.MOVI:
+                return (cpu, r) -> r[reg2].data = address;
+            case Instruction.ADDI:
+                return (cpu, r) -> r[reg2].data++;
+            case Instruction.MULI:
+                return (cpu, r) -> r[reg2].data = r[reg2].data * addressIndex;
+            case Instruction.DIVI:
+                if (addressIndex == 0) {
+                    return (cpu, r) -> { };
+                }
+                return (cpu, r) -> r[reg2].data = r[reg2].data / addressIndex;
+            case Instruction.LDI:
+                return (cpu, r) -> r[reg2].data = addressIndex;
+            case Instruction.SLT:
+                return (cpu, r) -> r[reg3].data = r[reg1].data < r[reg2].data ? 1 : 0;
+            case Instruction.SLTI:
+                return (cpu, r) -> r[reg2].data = r[reg1].data < addressIndex ? 1 : 0;
+            case Instruction.HLT:
+                return (cpu, r) -> cpu.halt();
+            case Instruction.NOP:
+                return (cpu, r) -> cpu.jump(cpu.getProgramCounter() + 1);
+            case Instruction.JMP:
+                return (cpu, r) -> cpu.jump(addressIndex);
+            case Instruction.BEQ:
+                return (cpu, r) -> {
+                    if (r[reg1].data == r[reg2].data) {
+                        cpu.jump(addressIndex);
+                    }
+                };
+            case Instruction.BNE:
+                return (cpu, r) -> {
+                    if (r[reg1].data != r[reg2].data) {
+                        cpu.jump(addressIndex);
+                    }
+                };
+            case Instruction.BEZ:
+                return (cpu, r) -> {
+                    if (r[reg2].data == 0) {
+                        cpu.jump(addressIndex);
+                    }
+                };
+            case Instruction.BNZ:
+                return (cpu, r) -> {
+                    if (r[reg1].data != 0) {
+                        cpu.jump(addressIndex);
+                    }
+                };
+            case Instruction.BGZ:
+                return (cpu, r) -> {
+                    if (r[reg1].data > 0) {
+                        cpu.jump(addressIndex);
+                    }
+                };
+            case Instruction.BLZ:
+                return (cpu, r) -> {
+                    if (r[reg1].data < 0) {
+                        cpu.jump(addressIndex);
+                    }
+                };
+            default:
+                // Not an instruction, the interpreter ignores it too
+                return (cpu, r) -> { };
+        }
+    }
+
+    interface Op {
+        void run(CPU cpu, Register[] r);
+    }
+
+    static final class Block {
+        final int start;
+        final int end;
+        private final Op[] ops;
+        private final int[] opcodes;
+        private final int[] fetches;
+        // Cache lookups that can miss: the first fetch of every run and every load
+        final int accesses;
+
+        Block(int start, int end, Op[] ops, int[] opcodes, int[] fetches) {
+            this.start = start;
+            this.end = end;
+            this.ops = ops;
+            this.opcodes = opcodes;
+            this.fetches = fetches;
+            int accesses = 0;
+            for (int i = 0; i < ops.length; i++) {
+                if (fetches[i] > 0) {
+                    accesses++;
+                }
+                if (opcodes[i] == Instruction.LW) {
+                    accesses++;
+                }
+            }
+            this.accesses = accesses;
+        }
+
+        int length() {
+            return end - start;
+        }
+
+        // Opcode of the i-th instruction, for Profile
+        int opcode(int i) {
+            return opcodes[i];
+        }
+
+        // Run every operation, with the CPU's pc already at end
+        void run(CPU cpu, Register[] r, Cache cache) {
+            for (int i = 0; i < ops.length; i++) {
+                if (fetches[i] > 0) {
+                    cache.fetch_run(start + i, fetches[i]);
+                }
+                ops[i].run(cpu, r);
+            }
+        }
+    }
+
+    // The translations of one simulation's jobs by program text
+    static final class Library {
+        private final ConcurrentHashMap<Code, Translation> translations = new ConcurrentHashMap<>();
+
+        // Forget every translation, the next run may use another cache line size
+        void clear() {
+            translations.clear();
+        }
+
+        // The translation of a job's code as it is on disk
+        Translation of(PCB job, int[] disk, int line_size) {
+            int start = job.getDiskStart();
+            int[] words = Arrays.copyOfRange(disk, start, start + job.getNumberofInstructions());
+            return translations.computeIfAbsent(new Code(words), code -> new Translation(code.words, line_size));
+        }
+    }
+
+    // Program text as a map key
+    private static final class Code {
+        final int[] words;
+        private final int hash;
+
+        Code(int[] words) {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Code && Arrays.equals(words, ((Code) other).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
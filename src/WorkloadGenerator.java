@@ -0,0 +1,261 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ Writes random but valid program files for scale testing.
+ Every job runs loop_depth nested counted loops over a body of arithmetic and I/O
+ instructions, writes its result to its output buffer and halts, so a generated file runs
+ to completion under every scheduler. The same settings and seed always give the same file.
+ Set the fields of a generator, then call generate.
+
+ Usage: java WorkloadGenerator [key=value ...]
+   jobs, seed, instructions=min,max, priority=min,max, instruction_distribution, priority_distribution,
+   buffers=input,output,temp, io_ratio, loop_depth, loop_iterations, text=<file>, image=<file>
+ Without text or image it writes metrics/Program-File-<jobs>-JOBS.txt.
+ Jobs must fit in Simulation.ram_size words to run without paging.
+ */
+class WorkloadGenerator {
+
+    long seed = 3502;
+    int jobs = 10000;
+
+    // Instruction count and priority of each job, the defaults match the 30-job file
+    distribution instruction_distribution = distribution.UNIFORM;
+    int min_instructions = 0x13;
+    int max_instructions = 0x1C;
+    distribution priority_distribution = distribution.UNIFORM;
+    int min_priority = 1;
+    int max_priority = 0xC;
+
+    // Buffer sizes in words
+    int input_size = 0x14;
+    int output_size = 0xC;
+    int temp_size = 0xC;
+
+    // Fraction of the loop body that is RD/WR rather than arithmetic
+    double io_ratio = 0.2;
+
+    // Number of nested loops and how many times each one runs
+    int loop_depth = 1;
+    int loop_iterations = 4;
+
+    // Registers: R1 holds 1, R2-R5 are loop counters, R0 and R6-R11 hold data
+    private static final int ONE = 1;
+    private static final int FIRST_COUNTER = 2;
+    private static final int MAX_DEPTH = 4;
+    private static final int[] DATA = {0, 6, 7, 8, 9, 10, 11};
+    private static final int[] ARITHMETIC_OPS = {Instruction.MOV, Instruction.ADD, Instruction.SUB,
+            Instruction.MUL, Instruction.DIV, Instruction.AND, Instruction.OR, Instruction.SLT};
+
+    // Instructions outside the loop body: LDI R1, the final WR and HLT, and per loop LDI, SUB and BNZ
+    private static final int FIXED_INSTRUCTIONS = 3;
+    private static final int LOOP_INSTRUCTIONS = 3;
+
+    // Instructions address words by byte offset in 16 bits
+    private static final int MAX_JOB_WORDS = 0xFFFF >>> 2;
+
+    public static void main(String[] args) throws IOException {
+        WorkloadGenerator generator = new WorkloadGenerator();
+        File text = null;
+        File image = null;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            String value = pair.length > 1 ? pair[1] : "";
+            String[] range = value.split(",");
+            switch (pair[0]) {
+                case "jobs": generator.jobs = Integer.parseInt(value); break;
+                case "seed": generator.seed = Long.parseLong(value); break;
+                case "instructions": {
+                    generator.min_instructions = Integer.parseInt(range[0]);
+                    generator.max_instructions = Integer.parseInt(range[range.length - 1]);
+                    break;
+                }
+                case "priority": {
+                    generator.min_priority = Integer.parseInt(range[0]);
+                    generator.max_priority = Integer.parseInt(range[range.length - 1]);
+                    break;
+                }
+                case "instruction_distribution": generator.instruction_distribution = distribution.valueOf(value); break;
+                case "priority_distribution": generator.priority_distribution = distribution.valueOf(value); break;
+                case "buffers": {
+                    generator.input_size = Integer.parseInt(range[0]);
+                    generator.output_size = Integer.parseInt(range[1]);
+                    generator.temp_size = Integer.parseInt(range[2]);
+                    break;
+                }
+                case "io_ratio": generator.io_ratio = Double.parseDouble(value); break;
+                case "loop_depth": generator.loop_depth = Integer.parseInt(value); break;
+                case "loop_iterations": generator.loop_iterations = Integer.parseInt(value); break;
+                case "text": text = new File(value); break;
+                case "image": image = new File(value); break;
+                default: throw new IllegalArgumentException("Unknown setting " + arg);
+            }
+        }
+        if (text == null && image == null) {
+            text = new File("metrics/Program-File-" + generator.jobs + "-JOBS.txt");
+        }
+        generator.generate(text, image);
+    }
+
+    // Generate jobs into a text program file, an image, or both. Either file may be null.
+    void generate(File text, File image) throws IOException {
+        if (jobs < 0) {
+            throw new IllegalArgumentException("jobs must not be negative");
+        }
+        if (min_instructions > max_instructions) {
+            throw new IllegalArgumentException("instructions range " + min_instructions + "," + max_instructions + " is inverted");
+        }
+        if (min_priority > max_priority) {
+            throw new IllegalArgumentException("priority range " + min_priority + "," + max_priority + " is inverted");
+        }
+        if (loop_depth < 0 || loop_depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("loop_depth must be between 0 and " + MAX_DEPTH);
+        }
+        if (loop_iterations < 1 || loop_iterations > MAX_JOB_WORDS) {
+            throw new IllegalArgumentException("loop_iterations must be between 1 and " + MAX_JOB_WORDS);
+        }
+        if (input_size < 1 || output_size < 1) {
+            throw new IllegalArgumentException("Jobs need at least one input and one output word");
+        }
+        int largest = Math.max(max_instructions, FIXED_INSTRUCTIONS + LOOP_INSTRUCTIONS * loop_depth + 1);
+        if (largest + input_size + output_size + temp_size > MAX_JOB_WORDS) {
+            throw new IllegalArgumentException("Jobs can be at most " + MAX_JOB_WORDS + " words");
+        }
+
+        Random random = new Random(seed);
+        int[] words = new int[largest + input_size + output_size + temp_size];
+        BufferedWriter out = text == null ? null : new BufferedWriter(new FileWriter(text), 1 << 16);
+        ProgramImage.Writer img = image == null ? null : new ProgramImage.Writer(image, jobs);
+        try {
+            for (int id = 1; id <= jobs; id++) {
+                int requested = sample(random, instruction_distribution, min_instructions, max_instructions);
+                int priority = sample(random, priority_distribution, min_priority, max_priority);
+                int instructions = program(random, words, requested);
+                for (int i = 0; i < input_size; i++) {
+                    words[instructions + i] = random.nextInt(100);
+                }
+                for (int i = instructions + input_size; i < instructions + input_size + output_size + temp_size; i++) {
+                    words[i] = 0;
+                }
+
+                PCB job = new PCB(id, instructions, priority, 0);
+                job.setInputBufferSize(input_size);
+                job.setOutputBufferSize(output_size);
+                job.setTempBufferSize(temp_size);
+                if (out != null) {
+                    write_text(out, job, words);
+                }
+                if (img != null) {
+                    img.add(job, words, 0);
+                }
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            if (img != null) {
+                img.close();
+            }
+        }
+    }
+
+    // Write one job's program into words and return its instruction count, which is
+    // requested or the smallest program that fits the loops if that is larger
+    private int program(Random random, int[] words, int requested) {
+        int body = Math.max(1, requested - FIXED_INSTRUCTIONS - LOOP_INSTRUCTIONS * loop_depth);
+        int instructions = body + FIXED_INSTRUCTIONS + LOOP_INSTRUCTIONS * loop_depth;
+        int input = instructions;
+        int output = instructions + input_size;
+        int pc = 0;
+
+        words[pc++] = immediate(Instruction.LDI, 0, ONE, 1);
+        int[] loop_start = new int[loop_depth];
+        for (int depth = 0; depth < loop_depth; depth++) {
+            words[pc++] = immediate(Instruction.LDI, 0, FIRST_COUNTER + depth, loop_iterations);
+            loop_start[depth] = pc;
+        }
+        for (int i = 0; i < body; i++) {
+            int data = DATA[random.nextInt(DATA.length)];
+            if (random.nextDouble() < io_ratio) {
+                if (random.nextBoolean()) {
+                    words[pc++] = io(Instruction.RD, data, input + random.nextInt(input_size));
+                } else {
+                    words[pc++] = io(Instruction.WR, data, output + random.nextInt(output_size + temp_size));
+                }
+            } else {
+                int op = ARITHMETIC_OPS[random.nextInt(ARITHMETIC_OPS.length)];
+                words[pc++] = arithmetic(op, DATA[random.nextInt(DATA.length)], DATA[random.nextInt(DATA.length)], data);
+            }
+        }
+        for (int depth = loop_depth - 1; depth >= 0; depth--) {
+            int counter = FIRST_COUNTER + depth;
+            words[pc++] = arithmetic(Instruction.SUB, counter, ONE, counter);
+            words[pc++] = immediate(Instruction.BNZ, counter, 0, loop_start[depth]);
+        }
+        words[pc++] = io(Instruction.WR, 0, output);
+        words[pc++] = unconditional(Instruction.HLT, 0);
+        return pc;
+    }
+
+    private static int sample(Random random, distribution kind, int min, int max) {
+        switch (kind) {
+            case FIXED:
+                return min;
+            case EXPONENTIAL: {
+                // Mostly small values with a long tail up to max
+                double mean = Math.max(1, (max - min) / 4.0);
+                return Math.min(max, min + (int) (-Math.log(1 - random.nextDouble()) * mean));
+            }
+            default:
+                return min + random.nextInt(max - min + 1);
+        }
+    }
+
+    private static void write_text(BufferedWriter out, PCB job, int[] words) throws IOException {
+        out.write(String.format("// JOB %X %X %X%n", job.getJobId(), job.getNumberofInstructions(), job.getPriority()));
+        int i = 0;
+        for (; i < job.getNumberofInstructions(); i++) {
+            write_word(out, words[i]);
+        }
+        out.write(String.format("// Data %X %X %X%n", job.getInputBufferSize(), job.getOutputBufferSize(),
+                job.getTempBufferSize()));
+        for (; i < job.getTotalSize(); i++) {
+            write_word(out, words[i]);
+        }
+        out.write(String.format("// END%n"));
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // Same as String.format("0x%08X"), which is far too slow for a million jobs
+    private static void write_word(BufferedWriter out, int word) throws IOException {
+        out.write("0x");
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            out.write(HEX[(word >>> shift) & 0xF]);
+        }
+        out.newLine();
+    }
+
+    // Instruction encodings, see Instruction for the field layout. Addresses are word indexes.
+    private static int arithmetic(int opcode, int s1, int s2, int d) {
+        return (Instruction.ARITHMETIC << 30) | (opcode << 24) | (s1 << 20) | (s2 << 16) | (d << 12);
+    }
+    private static int immediate(int opcode, int b, int d, int address) {
+        return (Instruction.CONDITIONAL << 30) | (opcode << 24) | (b << 20) | (d << 16) | (address << 2);
+    }
+    private static int unconditional(int opcode, int address) {
+        return (Instruction.UNCONDITIONAL << 30) | (opcode << 24) | (address << 2);
+    }
+    private static int io(int opcode, int r1, int address) {
+        return (Instruction.IO << 30) | (opcode << 24) | (r1 << 20) | (address << 2);
+    }
+
+    enum distribution {
+        FIXED,
+        UNIFORM,
+        EXPONENTIAL
+    }
+}